@@ -0,0 +1,39 @@
+package tilegame;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The VectorMotionIntegrator class steps as many bodies at a time as fit in
+ * the widest vector registers of the CPU, with the incubating Vector API.
+ * Each lane does the same multiplications and additions, in the same order,
+ * as the ScalarMotionIntegrator, so the results are the same.
+ * <p>
+ * This class is only built by the "vector" Maven profile, and is created
+ * through MotionIntegrators.create().
+ */
+public class VectorMotionIntegrator implements MotionIntegrator {
+
+	private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+	public void integrate(int count, float time, float[] x, float[] y, float[] vx, float[] vy, float[] gravity,
+			float[] newX, float[] newY) {
+		int i = 0;
+		int bound = SPECIES.loopBound(count);
+		for (; i < bound; i += SPECIES.length()) {
+			FloatVector g = FloatVector.fromArray(SPECIES, gravity, i);
+			FloatVector v = FloatVector.fromArray(SPECIES, vy, i).add(g.mul(time));
+			v.intoArray(vy, i);
+			FloatVector dx = FloatVector.fromArray(SPECIES, vx, i).mul(time);
+			FloatVector.fromArray(SPECIES, x, i).add(dx).intoArray(newX, i);
+			FloatVector.fromArray(SPECIES, y, i).add(v.mul(time)).intoArray(newY, i);
+		}
+		// the lanes left over
+		for (; i < count; i++) {
+			vy[i] = vy[i] + gravity[i] * time;
+			newX[i] = x[i] + vx[i] * time;
+			newY[i] = y[i] + vy[i] * time;
+		}
+	}
+
+}
@@ -1,11 +1,30 @@
+import graphics.FrameCapture;
 import tilegame.GameManager;
 
 public class Main {
 
 	public static void main(String[] args) {
 		GameManager game = new GameManager();
-		if(args.length > 0 && args[0].equals("-f")){
-			game.setFullScreen();
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.equals("-f")) {
+				game.setFullScreen();
+			} else if (arg.equals("-dirty")) {
+				// repaint only the changed regions of the screen
+				game.setDirtyRectangleMode(true);
+			} else if (arg.equals("-fixed")) {
+				// move creatures with deterministic fixed-point math
+				game.setFixedPointPhysics(true);
+			} else if (arg.equals("-rgb24")) {
+				// record with F9 as a raw rgb24 stream instead of PNG files
+				game.setCaptureFormat(FrameCapture.Format.RGB24);
+			} else if (arg.equals("-scale") && i + 1 < args.length) {
+				// draw at a fixed scale, like "-scale 1.5"
+				game.setScale(Float.parseFloat(args[++i]));
+			} else if (arg.equals("-autoscale")) {
+				// pick the scale from the window height
+				game.setAutoScale(true);
+			}
 		}
 		game.run();
 	}
@@ -1,56 +1,72 @@
 package graphics;
 
 import java.awt.Image;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * The Animation class manages a series of images (frames) and the amount of
- * time to display each frame.
+ * time to display each frame. An Animation can also show the frames of
+ * another Animation mirrored or flipped, with the copies taken from a
+ * TransformedImageCache when they're shown.
+ * <p>
+ * The frames are kept in an immutable timeline shared by clones, so each
+ * Animation only holds its own playback position. Adding a frame creates a
+ * new timeline, which doesn't change Animations cloned before. Animations
+ * aren't thread-safe, and are meant to be used by the game thread.
  */
 public class Animation {
 
-	private List<AnimFrame> frames;
+	private static final Timeline EMPTY = new Timeline(new Image[0], new long[0]);
+
+	private Timeline timeline;
 	private int currFrameIndex;
 	private long animTime;
-	private long totalDuration;
+	private final TransformedImageCache transformedImages;
+	private final int transform;
 
 	/**
 	 * Creates a new, empty Animation.
 	 */
 	public Animation() {
-		this(new ArrayList<AnimFrame>(), 0);
+		this(EMPTY, null, TransformedImageCache.NONE);
+	}
+
+	/**
+	 * Creates an Animation that shows the frames of another Animation with
+	 * the specified transform (MIRROR, FLIP or MIRROR_FLIP). The frames are
+	 * shared, like with clone().
+	 */
+	public Animation(Animation animation, TransformedImageCache transformedImages, int transform) {
+		this(animation.timeline, transformedImages, transform);
 	}
 
-	private Animation(List<AnimFrame> frames, long totalDuration) {
-		this.frames = frames;
-		this.totalDuration = totalDuration;
+	private Animation(Timeline timeline, TransformedImageCache transformedImages, int transform) {
+		this.timeline = timeline;
+		this.transformedImages = transformedImages;
+		this.transform = transform;
 		start();
 	}
 
 	/**
-	 * Creates a duplicate of this animation. The list of frames are shared
-	 * between the two Animations, but each Animation can be animated
-	 * independently.
+	 * Creates a duplicate of this animation. The frames are shared between
+	 * the two Animations, but each Animation can be animated independently.
 	 */
 	@Override
 	public Animation clone() {
-		return new Animation(frames, totalDuration);
+		return new Animation(timeline, transformedImages, transform);
 	}
 
 	/**
 	 * Adds an image to the animation with the specified duration (time to
 	 * display the image).
 	 */
-	public synchronized void addFrame(Image image, long duration) {
-		totalDuration += duration;
-		frames.add(new AnimFrame(image, totalDuration));
+	public void addFrame(Image image, long duration) {
+		timeline = timeline.addFrame(image, duration);
 	}
 
 	/**
 	 * Starts this animation over from the beginning.
 	 */
-	public synchronized void start() {
+	public void start() {
 		animTime = 0;
 		currFrameIndex = 0;
 	}
@@ -58,44 +74,103 @@ public class Animation {
 	/**
 	 * Updates this animation's current image (frame), if neccesary.
 	 */
-	public synchronized void update(long elapsedTime) {
-		if (frames.isEmpty()) {
+	public void update(long elapsedTime) {
+		long[] endTimes = timeline.endTimes;
+		if (endTimes.length == 0) {
 			return;
 		}
 
 		animTime += elapsedTime;
+		long totalDuration = endTimes[endTimes.length - 1];
 		if (animTime >= totalDuration) {
-			animTime = animTime % totalDuration;
-			currFrameIndex = 0; // play from beginning
+			animTime = animTime % totalDuration; // play from beginning
 		}
-		while (animTime > getFrame(currFrameIndex).endTime) {
-			currFrameIndex++;
+		// most updates stay on the current frame or move to the next one
+		int i = currFrameIndex;
+		if (animTime > endTimes[i] || (i > 0 && animTime <= endTimes[i - 1])) {
+			i++;
+			if (i == endTimes.length || animTime > endTimes[i] || animTime <= endTimes[i - 1]) {
+				i = timeline.getFrameIndex(animTime);
+			}
+			currFrameIndex = i;
 		}
 	}
 
+	/**
+	 * Gets the number of frames of this Animation.
+	 */
+	public int getFrameCount() {
+		return timeline.frames.length;
+	}
+
+	/**
+	 * Gets the image of a frame of this Animation, as added, without the
+	 * transform of this Animation.
+	 */
+	public Image getFrame(int index) {
+		return timeline.frames[index];
+	}
+
 	/**
 	 * Gets this Animation's current image. Returns null if this animation has
 	 * no images.
 	 */
-	public synchronized Image getImage() {
-		if (frames.isEmpty()) {
+	public Image getImage() {
+		Image[] frames = timeline.frames;
+		if (frames.length == 0) {
 			return null;
 		}
-		return getFrame(currFrameIndex).image;
+		Image image = frames[currFrameIndex];
+		if (transformedImages != null) {
+			image = transformedImages.get(image, transform);
+		}
+		return image;
 	}
 
-	private AnimFrame getFrame(int i) {
-		return frames.get(i);
-	}
+	/**
+	 * The frames of an Animation and the time each one ends, from the start
+	 * of the animation. A frame is shown until, and including, its end time.
+	 */
+	private static class Timeline {
 
-	private class AnimFrame {
+		final Image[] frames;
+		final long[] endTimes;
 
-		Image image;
-		long endTime;
+		Timeline(Image[] frames, long[] endTimes) {
+			this.frames = frames;
+			this.endTimes = endTimes;
+		}
+
+		/**
+		 * Creates a new Timeline with one more frame.
+		 */
+		Timeline addFrame(Image image, long duration) {
+			int n = frames.length;
+			Image[] newFrames = new Image[n + 1];
+			long[] newEndTimes = new long[n + 1];
+			System.arraycopy(frames, 0, newFrames, 0, n);
+			System.arraycopy(endTimes, 0, newEndTimes, 0, n);
+			newFrames[n] = image;
+			newEndTimes[n] = (n == 0 ? 0 : endTimes[n - 1]) + duration;
+			return new Timeline(newFrames, newEndTimes);
+		}
 
-		public AnimFrame(Image image, long endTime) {
-			this.image = image;
-			this.endTime = endTime;
+		/**
+		 * Finds the first frame that ends at or after the specified time,
+		 * with a binary search.
+		 */
+		int getFrameIndex(long time) {
+			int low = 0;
+			int high = endTimes.length - 1;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (endTimes[mid] < time) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
 		}
 	}
 }
@@ -0,0 +1,90 @@
+package graphics;
+
+import java.awt.Image;
+
+/**
+ * The CollisionMask class has one bit for each pixel of an image, set for the
+ * pixels that aren't fully transparent. Each row is packed into longs, 64
+ * pixels per long, so two masks are tested against each other 64 pixels at
+ * a time, by shifting the bits of one mask to line up with the other and
+ * ANDing the words.
+ */
+public class CollisionMask {
+
+	private final int width;
+	private final int height;
+	// the number of longs of each row
+	private final int words;
+	// bit i of word j of a row is the pixel at x = j * 64 + i
+	private final long[] bits;
+
+	/**
+	 * Creates the CollisionMask of an image.
+	 */
+	public CollisionMask(Image image) {
+		width = image.getWidth(null);
+		height = image.getHeight(null);
+		words = (width + 63) >>> 6;
+		bits = new long[words * height];
+		int[] pixels = CompatibleImages.getPixels(image);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				if ((pixels[y * width + x] >>> 24) != 0) {
+					bits[y * words + (x >>> 6)] |= 1L << (x & 63);
+				}
+			}
+		}
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Checks if this mask, with its top-left corner at (x, y), has a set pixel
+	 * in the same place as another mask with its top-left corner at
+	 * (otherX, otherY).
+	 */
+	public boolean collides(int x, int y, CollisionMask other, int otherX, int otherY) {
+		int left = Math.max(x, otherX);
+		int right = Math.min(x + width, otherX + other.width);
+		int top = Math.max(y, otherY);
+		int bottom = Math.min(y + height, otherY + other.height);
+		if (left >= right || top >= bottom) {
+			return false;
+		}
+		for (int row = top; row < bottom; row++) {
+			int offset = (row - y) * words;
+			int otherOffset = (row - otherY) * other.words;
+			for (int px = left; px < right; px += 64) {
+				int length = Math.min(right - px, 64);
+				long lengthMask = (length == 64) ? -1L : (1L << length) - 1;
+				long word = getBits(bits, offset, words, px - x);
+				long otherWord = getBits(other.bits, otherOffset, other.words, px - otherX);
+				if ((word & otherWord & lengthMask) != 0) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets 64 bits of a row, starting at the specified bit. The bits past
+	 * the end of the row are 0.
+	 */
+	private static long getBits(long[] bits, int rowOffset, int words, int bit) {
+		int word = bit >>> 6;
+		int shift = bit & 63;
+		long value = bits[rowOffset + word] >>> shift;
+		if (shift != 0 && word + 1 < words) {
+			value |= bits[rowOffset + word + 1] << (64 - shift);
+		}
+		return value;
+	}
+
+}
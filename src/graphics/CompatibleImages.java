@@ -0,0 +1,102 @@
+package graphics;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * The CompatibleImages class has helper methods for images that are copied
+ * into images compatible with the display. Java2D can keep such images in
+ * accelerated memory and draw them with a plain blit, unlike images loaded by
+ * the toolkit, which may stay in a format that has to be converted on every
+ * draw.
+ */
+public class CompatibleImages {
+
+	private CompatibleImages() {
+	}
+
+	/**
+	 * Copies an image into a new image compatible with the specified
+	 * GraphicsConfiguration, with the transparency found in its pixels:
+	 * opaque images become OPAQUE, images with fully transparent pixels only
+	 * become BITMASK, and other images TRANSLUCENT.
+	 */
+	public static BufferedImage toCompatibleImage(GraphicsConfiguration gc, Image image) {
+		int w = image.getWidth(null);
+		int h = image.getHeight(null);
+		BufferedImage compatibleImage = gc.createCompatibleImage(w, h, getTransparency(image));
+		Graphics2D g = compatibleImage.createGraphics();
+		g.setComposite(AlphaComposite.Src);
+		g.drawImage(image, 0, 0, null);
+		g.dispose();
+		return compatibleImage;
+	}
+
+	/**
+	 * Finds out if an image is opaque (Transparency.OPAQUE), has fully
+	 * transparent pixels only (Transparency.BITMASK), or has translucent
+	 * pixels (Transparency.TRANSLUCENT), by looking at every pixel.
+	 */
+	public static int getTransparency(Image image) {
+		int transparency = Transparency.OPAQUE;
+		for (int argb : getPixels(image)) {
+			int alpha = argb >>> 24;
+			if (alpha == 0) {
+				transparency = Transparency.BITMASK;
+			} else if (alpha != 0xff) {
+				return Transparency.TRANSLUCENT;
+			}
+		}
+		return transparency;
+	}
+
+	/**
+	 * Gets the smallest rectangle that holds all the pixels of an image that
+	 * aren't fully transparent. Returns an empty rectangle if the image is
+	 * fully transparent.
+	 */
+	public static Rectangle getVisibleBounds(Image image) {
+		int w = image.getWidth(null);
+		int h = image.getHeight(null);
+		int[] pixels = getPixels(image);
+		int minX = w;
+		int minY = h;
+		int maxX = -1;
+		int maxY = -1;
+		for (int y = 0; y < h; y++) {
+			for (int x = 0; x < w; x++) {
+				if ((pixels[y * w + x] >>> 24) != 0) {
+					minX = Math.min(minX, x);
+					maxX = Math.max(maxX, x);
+					minY = Math.min(minY, y);
+					maxY = Math.max(maxY, y);
+				}
+			}
+		}
+		if (maxX < 0) {
+			return new Rectangle();
+		}
+		return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+	}
+
+	/**
+	 * Gets the ARGB pixels of an image, row by row.
+	 */
+	static int[] getPixels(Image image) {
+		int w = image.getWidth(null);
+		int h = image.getHeight(null);
+		BufferedImage copy = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = copy.createGraphics();
+		g.setComposite(AlphaComposite.Src);
+		g.drawImage(image, 0, 0, null);
+		g.dispose();
+		return ((DataBufferInt) copy.getRaster().getDataBuffer()).getData();
+	}
+
+}
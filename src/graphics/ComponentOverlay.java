@@ -0,0 +1,145 @@
+package graphics;
+
+import java.awt.AlphaComposite;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.ContainerEvent;
+import java.awt.event.ContainerListener;
+import java.awt.image.BufferedImage;
+
+import javax.swing.AbstractButton;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/**
+ * The ComponentOverlay class draws the Swing components of a container (like
+ * the layered pane of a full screen window) from a cached translucent image.
+ * The components are only painted into the image again after something that
+ * changes their look: the state of a button (rollover, pressed, etc.), a
+ * component (like a tooltip) added or removed, or the container resized.
+ * Each frame then draws the components with one image copy.
+ * <p>
+ * The changes are noticed on the AWT event dispatch thread, and the image is
+ * painted on the thread that calls draw().
+ */
+public class ComponentOverlay {
+
+	private final Container container;
+	private final Listener listener;
+	private volatile boolean dirty = true;
+	private BufferedImage image;
+
+	/**
+	 * Creates a new ComponentOverlay of the components of the specified
+	 * container, watching every button in it.
+	 */
+	public ComponentOverlay(Container container) {
+		this.container = container;
+		listener = new Listener();
+		container.addComponentListener(listener);
+		watch(container);
+	}
+
+	/**
+	 * Marks the image as out of date, so the components are painted again
+	 * before the next draw.
+	 */
+	public void invalidate() {
+		dirty = true;
+	}
+
+	/**
+	 * Draws the components of the container, painting them into the image
+	 * first if they changed.
+	 */
+	public void draw(Graphics2D g) {
+		int w = container.getWidth();
+		int h = container.getHeight();
+		if (w <= 0 || h <= 0) {
+			return;
+		}
+		if (image == null || image.getWidth() != w || image.getHeight() != h) {
+			if (image != null) {
+				image.flush();
+			}
+			GraphicsConfiguration gc = g.getDeviceConfiguration();
+			image = gc.createCompatibleImage(w, h, Transparency.TRANSLUCENT);
+			dirty = true;
+		}
+		if (dirty) {
+			// clear the flag first, so changes made while painting aren't lost
+			dirty = false;
+			Graphics2D imageGraphics = image.createGraphics();
+			imageGraphics.setComposite(AlphaComposite.Clear);
+			imageGraphics.fillRect(0, 0, w, h);
+			imageGraphics.setComposite(AlphaComposite.SrcOver);
+			imageGraphics.setFont(container.getFont());
+			container.paintComponents(imageGraphics);
+			imageGraphics.dispose();
+		}
+		g.drawImage(image, 0, 0, null);
+	}
+
+	/**
+	 * Starts listening to a component and all the components in it.
+	 */
+	private void watch(Component component) {
+		if (component instanceof AbstractButton) {
+			((AbstractButton) component).getModel().addChangeListener(listener);
+		}
+		if (component instanceof Container) {
+			Container c = (Container) component;
+			c.addContainerListener(listener);
+			for (Component child : c.getComponents()) {
+				watch(child);
+			}
+		}
+	}
+
+	/**
+	 * Stops listening to a component and all the components in it.
+	 */
+	private void unwatch(Component component) {
+		if (component instanceof AbstractButton) {
+			((AbstractButton) component).getModel().removeChangeListener(listener);
+		}
+		if (component instanceof Container) {
+			Container c = (Container) component;
+			c.removeContainerListener(listener);
+			for (Component child : c.getComponents()) {
+				unwatch(child);
+			}
+		}
+	}
+
+	/**
+	 * Marks the image as out of date on any change of the components.
+	 */
+	private class Listener extends ComponentAdapter implements ChangeListener, ContainerListener {
+
+		public void stateChanged(ChangeEvent e) {
+			dirty = true;
+		}
+
+		public void componentAdded(ContainerEvent e) {
+			watch(e.getChild());
+			dirty = true;
+		}
+
+		public void componentRemoved(ContainerEvent e) {
+			unwatch(e.getChild());
+			dirty = true;
+		}
+
+		@Override
+		public void componentResized(ComponentEvent e) {
+			dirty = true;
+		}
+	}
+
+}
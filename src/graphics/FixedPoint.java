@@ -0,0 +1,60 @@
+package graphics;
+
+/**
+ * The FixedPoint class converts between floats and 16.16 fixed-point ints:
+ * the high 16 bits are the whole part and the low 16 bits the fraction, so
+ * a fixed-point value is the number times 65536. Fixed-point math only uses
+ * int operations, which give the same results on every platform.
+ * <p>
+ * Positions in fixed-point go up to 32767 pixels, so maps can be up to 511
+ * tiles of 64 pixels wide or high.
+ */
+public class FixedPoint {
+
+	/** The number of bits of the fraction. */
+	public static final int FRACTION_BITS = 16;
+	/** The fixed-point value of 1. */
+	public static final int ONE = 1 << FRACTION_BITS;
+	/** The fixed-point value of 1/2. */
+	public static final int HALF = ONE >> 1;
+
+	private FixedPoint() {
+	}
+
+	/**
+	 * Converts a float to fixed-point, rounded to the nearest 1/65536.
+	 */
+	public static int toFixed(float f) {
+		return Math.round(f * ONE);
+	}
+
+	/**
+	 * Converts a whole number to fixed-point.
+	 */
+	public static int toFixed(int i) {
+		return i << FRACTION_BITS;
+	}
+
+	/**
+	 * Converts a fixed-point value to a float.
+	 */
+	public static float toFloat(int fixed) {
+		return fixed / (float) ONE;
+	}
+
+	/**
+	 * Rounds a fixed-point value to the nearest whole number, like
+	 * Math.round() does for floats.
+	 */
+	public static int round(int fixed) {
+		return (fixed + HALF) >> FRACTION_BITS;
+	}
+
+	/**
+	 * Rounds a fixed-point value down to a whole number.
+	 */
+	public static int floor(int fixed) {
+		return fixed >> FRACTION_BITS;
+	}
+
+}
@@ -0,0 +1,269 @@
+package graphics;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.imageio.ImageIO;
+
+/**
+ * The FrameCapture class records frames to disk without slowing down the game
+ * loop. The game thread copies each frame into a free slot of a ring of
+ * pooled int[] frames, and a background thread encodes the frames in the ring,
+ * either as a sequence of PNG files or as a raw rgb24 stream (three bytes per
+ * pixel, which tools like ffmpeg read with "-f rawvideo -pix_fmt rgb24").
+ * <p>
+ * When the encoder falls behind and the ring is full, new frames are dropped
+ * instead of making the game thread wait. The ring has one writer (the game
+ * thread) and one reader (the encoder thread), so it needs no locks.
+ */
+public class FrameCapture {
+
+	/**
+	 * The formats frames can be written in.
+	 */
+	public enum Format {
+		/** One PNG file per frame. */
+		PNG,
+		/** One raw rgb24 file per frame size. */
+		RGB24
+	}
+
+	public static final int DEFAULT_RING_SIZE = 8;
+
+	private final File directory;
+	private final Format format;
+	private final Frame[] ring;
+	// the number of frames written to and read from the ring so far
+	private volatile long writeCount;
+	private volatile long readCount;
+	private volatile boolean running;
+	// set by stop(), so the encoder thread reports its own error
+	private volatile boolean stopped;
+	private final Thread encoderThread;
+
+	private int droppedCount;
+	private volatile IOException error;
+
+	// encoder state, used by the encoder thread only
+	private int frameNumber;
+	private BufferedImage pngImage;
+	private OutputStream rgbStream;
+	private byte[] rgbBuffer;
+	private int rgbWidth;
+	private int rgbHeight;
+
+	/**
+	 * Creates a new FrameCapture that writes frames of the specified format
+	 * in the specified directory, and starts its encoder thread.
+	 */
+	public FrameCapture(File directory, Format format) {
+		this(directory, format, DEFAULT_RING_SIZE);
+	}
+
+	/**
+	 * Creates a new FrameCapture that can hold up to ringSize frames not yet
+	 * encoded, and starts its encoder thread.
+	 */
+	public FrameCapture(File directory, Format format, int ringSize) {
+		this.directory = directory;
+		this.format = format;
+		ring = new Frame[Math.max(ringSize, 1)];
+		for (int i = 0; i < ring.length; i++) {
+			ring[i] = new Frame();
+		}
+		directory.mkdirs();
+		running = true;
+		encoderThread = new Thread("FrameCapture") {
+			public void run() {
+				encodeFrames();
+			}
+		};
+		encoderThread.setDaemon(true);
+		encoderThread.start();
+	}
+
+	/**
+	 * Copies a TYPE_INT_RGB frame into the ring, to be encoded later. Returns
+	 * false if the frame was dropped because the ring is full. Called by the
+	 * game thread only.
+	 */
+	public boolean capture(BufferedImage image) {
+		if (image.getType() != BufferedImage.TYPE_INT_RGB) {
+			throw new IllegalArgumentException("The frame must be a TYPE_INT_RGB image");
+		}
+		if (!running) {
+			return false;
+		}
+		long count = writeCount;
+		if (count - readCount == ring.length) {
+			droppedCount++;
+			return false;
+		}
+		Frame frame = ring[(int) (count % ring.length)];
+		frame.set(image);
+		// publish the frame to the encoder thread
+		writeCount = count + 1;
+		LockSupport.unpark(encoderThread);
+		return true;
+	}
+
+	/**
+	 * Gets the number of frames dropped so far.
+	 */
+	public int getDroppedCount() {
+		return droppedCount;
+	}
+
+	/**
+	 * Gets the number of frames captured so far, not counting the dropped
+	 * frames.
+	 */
+	public long getCapturedCount() {
+		return writeCount;
+	}
+
+	/**
+	 * Stops capturing without waiting. The encoder thread still encodes the
+	 * frames in the ring and closes the output, then prints the first error
+	 * it ran into, if any.
+	 */
+	public void stop() {
+		stopped = true;
+		running = false;
+		LockSupport.unpark(encoderThread);
+	}
+
+	/**
+	 * Stops capturing, waits until the frames in the ring are encoded, and
+	 * closes the output. Throws the first error the encoder ran into, if any.
+	 */
+	public void close() throws IOException {
+		running = false;
+		LockSupport.unpark(encoderThread);
+		try {
+			encoderThread.join();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * Encodes the frames in the ring until the capture is closed. Runs on the
+	 * encoder thread.
+	 */
+	private void encodeFrames() {
+		try {
+			while (true) {
+				long count = readCount;
+				if (count == writeCount) {
+					if (!running && count == writeCount) {
+						break;
+					}
+					LockSupport.park(this);
+					continue;
+				}
+				Frame frame = ring[(int) (count % ring.length)];
+				if (error == null) {
+					try {
+						encode(frame);
+					} catch (IOException ex) {
+						// keep draining the ring, so the game never waits
+						error = ex;
+					}
+				}
+				// give the slot back to the game thread
+				readCount = count + 1;
+			}
+		} finally {
+			closeStream();
+			if (stopped && error != null) {
+				// nobody waits for close(), so report the error here
+				error.printStackTrace();
+			}
+		}
+	}
+
+	private void encode(Frame frame) throws IOException {
+		frameNumber++;
+		if (format == Format.PNG) {
+			if (pngImage == null || pngImage.getWidth() != frame.width || pngImage.getHeight() != frame.height) {
+				pngImage = new BufferedImage(frame.width, frame.height, BufferedImage.TYPE_INT_RGB);
+			}
+			int[] pixels = ((DataBufferInt) pngImage.getRaster().getDataBuffer()).getData();
+			System.arraycopy(frame.pixels, 0, pixels, 0, frame.width * frame.height);
+			File file = new File(directory, "frame" + pad(frameNumber) + ".png");
+			ImageIO.write(pngImage, "png", file);
+		} else {
+			if (rgbStream == null || rgbWidth != frame.width || rgbHeight != frame.height) {
+				// start a new stream for each frame size
+				closeStream();
+				rgbWidth = frame.width;
+				rgbHeight = frame.height;
+				rgbBuffer = new byte[rgbWidth * rgbHeight * 3];
+				File file = new File(directory, "capture-" + rgbWidth + "x" + rgbHeight + "-" + frameNumber + ".rgb");
+				rgbStream = new BufferedOutputStream(new FileOutputStream(file), rgbBuffer.length);
+			}
+			int[] pixels = frame.pixels;
+			int size = rgbWidth * rgbHeight;
+			for (int i = 0, j = 0; i < size; i++) {
+				int rgb = pixels[i];
+				rgbBuffer[j++] = (byte) (rgb >> 16);
+				rgbBuffer[j++] = (byte) (rgb >> 8);
+				rgbBuffer[j++] = (byte) rgb;
+			}
+			rgbStream.write(rgbBuffer);
+		}
+	}
+
+	private void closeStream() {
+		if (rgbStream != null) {
+			try {
+				rgbStream.close();
+			} catch (IOException ex) {
+				if (error == null) {
+					error = ex;
+				}
+			}
+			rgbStream = null;
+		}
+	}
+
+	private static String pad(int number) {
+		String s = String.valueOf(number);
+		while (s.length() < 6) {
+			s = "0" + s;
+		}
+		return s;
+	}
+
+	/**
+	 * A pooled frame of the ring.
+	 */
+	private static class Frame {
+
+		int[] pixels = new int[0];
+		int width;
+		int height;
+
+		void set(BufferedImage image) {
+			width = image.getWidth();
+			height = image.getHeight();
+			// only allocate when the frame grows
+			if (pixels.length < width * height) {
+				pixels = new int[width * height];
+			}
+			int[] source = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+			System.arraycopy(source, 0, pixels, 0, width * height);
+		}
+	}
+
+}
@@ -0,0 +1,127 @@
+package graphics;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+
+/**
+ * The GlyphCache class draws text from pre-rendered glyphs. The printable
+ * ASCII characters of a font are rendered once, side by side, into one
+ * compatible image, and text is drawn by copying the glyphs out of it. Unlike
+ * drawString(), drawing text this way doesn't lay out glyphs or allocate
+ * anything, which makes it a good fit for text that changes every frame.
+ * <p>
+ * Characters outside of the printable ASCII range are drawn as '?'.
+ */
+public class GlyphCache {
+
+	private static final char FIRST_CHAR = ' ';
+	private static final char LAST_CHAR = '~';
+
+	private final Font font;
+	private final Color color;
+
+	private Image glyphs;
+	private final int[] glyphX = new int[LAST_CHAR - FIRST_CHAR + 1];
+	private final int[] glyphWidth = new int[LAST_CHAR - FIRST_CHAR + 1];
+	private int height;
+
+	/**
+	 * Creates a new GlyphCache of the specified font and color.
+	 */
+	public GlyphCache(Font font, Color color) {
+		this.font = font;
+		this.color = color;
+	}
+
+	/**
+	 * Gets the height of a line of text. Returns 0 until the glyphs are
+	 * rendered by the first call to draw() or getWidth().
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Gets the width of characters of a char array, as drawn on the specified
+	 * Graphics2D.
+	 */
+	public int getWidth(Graphics2D g, char[] chars, int offset, int length) {
+		if (glyphs == null) {
+			createGlyphs(g.getDeviceConfiguration());
+		}
+		int width = 0;
+		for (int i = offset; i < offset + length; i++) {
+			width += glyphWidth[getIndex(chars[i])];
+		}
+		return width;
+	}
+
+	/**
+	 * Draws characters of a char array with their top-left corner at (x, y).
+	 * Returns the x position after the last character.
+	 */
+	public int draw(Graphics2D g, char[] chars, int offset, int length, int x, int y) {
+		if (glyphs == null) {
+			createGlyphs(g.getDeviceConfiguration());
+		}
+		for (int i = offset; i < offset + length; i++) {
+			int index = getIndex(chars[i]);
+			int sx = glyphX[index];
+			int w = glyphWidth[index];
+			if (chars[i] != ' ') {
+				g.drawImage(glyphs, x, y, x + w, y + height, sx, 0, sx + w, height, null);
+			}
+			x += w;
+		}
+		return x;
+	}
+
+	private static int getIndex(char ch) {
+		if (ch < FIRST_CHAR || ch > LAST_CHAR) {
+			ch = '?';
+		}
+		return ch - FIRST_CHAR;
+	}
+
+	/**
+	 * Renders all the glyphs into one image.
+	 */
+	private void createGlyphs(GraphicsConfiguration gc) {
+		Image scratch = gc.createCompatibleImage(1, 1, Transparency.TRANSLUCENT);
+		Graphics2D g = (Graphics2D) scratch.getGraphics();
+		FontMetrics metrics = g.getFontMetrics(font);
+		g.dispose();
+		scratch.flush();
+
+		height = metrics.getHeight();
+		int width = 0;
+		for (char ch = FIRST_CHAR; ch <= LAST_CHAR; ch++) {
+			glyphX[ch - FIRST_CHAR] = width;
+			glyphWidth[ch - FIRST_CHAR] = metrics.charWidth(ch);
+			width += metrics.charWidth(ch);
+		}
+
+		glyphs = gc.createCompatibleImage(Math.max(width, 1), Math.max(height, 1), Transparency.TRANSLUCENT);
+		g = (Graphics2D) glyphs.getGraphics();
+		g.setComposite(AlphaComposite.Src);
+		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		g.setFont(font);
+		g.setColor(color);
+		char[] chars = new char[1];
+		for (char ch = FIRST_CHAR; ch <= LAST_CHAR; ch++) {
+			chars[0] = ch;
+			// clip each glyph to its own cell
+			g.setClip(glyphX[ch - FIRST_CHAR], 0, glyphWidth[ch - FIRST_CHAR], height);
+			g.drawChars(chars, 0, 1, glyphX[ch - FIRST_CHAR], metrics.getAscent());
+		}
+		g.dispose();
+	}
+
+}
@@ -0,0 +1,99 @@
+package graphics;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The ScaledImageCache class keeps copies of images scaled by one scale
+ * factor. Each copy is scaled once, with bicubic interpolation, into an image
+ * compatible with the display, so drawing it later costs no more than
+ * drawing the original image.
+ * <p>
+ * The copies are looked up by the original image, so code that works with
+ * the original (logical) images can draw their scaled copies. A copy is
+ * dropped once its original image is no longer used, like a mirrored image
+ * dropped by a TransformedImageCache.
+ */
+public class ScaledImageCache {
+
+	private final GraphicsConfiguration gc;
+	private final float scale;
+	private final Map<Image, Image> images;
+
+	/**
+	 * Creates a new, empty ScaledImageCache of the specified scale.
+	 */
+	public ScaledImageCache(GraphicsConfiguration gc, float scale) {
+		if (scale <= 0) {
+			throw new IllegalArgumentException("The scale must be positive: " + scale);
+		}
+		this.gc = gc;
+		this.scale = scale;
+		// images are compared by identity, as Image doesn't override equals()
+		images = new WeakHashMap<Image, Image>();
+	}
+
+	/**
+	 * Gets the scale of the images in this cache.
+	 */
+	public float getScale() {
+		return scale;
+	}
+
+	/**
+	 * Scales a size in pixels, rounding to the nearest pixel.
+	 */
+	public int scale(int pixels) {
+		return Math.round(pixels * scale);
+	}
+
+	/**
+	 * Gets the scaled copy of an image, scaling the image if it isn't cached.
+	 * At scale 1 the image itself is returned.
+	 */
+	public Image get(Image image) {
+		if (image == null || scale == 1) {
+			return image;
+		}
+		Image scaledImage = images.get(image);
+		if (scaledImage == null) {
+			scaledImage = createScaledImage(image);
+			images.put(image, scaledImage);
+		}
+		return scaledImage;
+	}
+
+	/**
+	 * Removes all the scaled images from this cache.
+	 */
+	public void clear() {
+		for (Image image : images.values()) {
+			image.flush();
+		}
+		images.clear();
+	}
+
+	private Image createScaledImage(Image image) {
+		int w = Math.max(scale(image.getWidth(null)), 1);
+		int h = Math.max(scale(image.getHeight(null)), 1);
+		// the interpolated edges of transparent images are translucent
+		int transparency = CompatibleImages.getTransparency(image) == Transparency.OPAQUE ? Transparency.OPAQUE
+				: Transparency.TRANSLUCENT;
+		Image scaledImage = gc.createCompatibleImage(w, h, transparency);
+
+		Graphics2D g = (Graphics2D) scaledImage.getGraphics();
+		g.setComposite(AlphaComposite.Src);
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+		g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+		g.drawImage(image, 0, 0, w, h, null);
+		g.dispose();
+		return scaledImage;
+	}
+
+}
@@ -2,6 +2,13 @@ package graphics;
 
 import java.awt.Image;
 
+/**
+ * A Sprite is an Animation with a position and a velocity. The position and
+ * velocity are kept as floats, or as 16.16 fixed-point ints in fixed-point
+ * mode, so the game can move Sprites with deterministic fixed-point math.
+ * Both kinds of getters and setters work in either mode, but the ones of the
+ * other mode convert each value.
+ */
 public class Sprite {
 
 	protected Animation anim;
@@ -11,91 +18,283 @@ public class Sprite {
 	// velocity (pixels per millisecond)
 	private float dx;
 	private float dy;
+	// the position and velocity in 16.16 fixed-point, used instead of the
+	// floats in fixed-point mode
+	private boolean fixedPoint;
+	private int fixedX;
+	private int fixedY;
+	private int fixedDx;
+	private int fixedDy;
+	// size of the frames (pixels)
+	private int width;
+	private int height;
+	// the box that collides with other Sprites, from the top-left corner
+	private int hitboxX;
+	private int hitboxY;
+	private int hitboxWidth;
+	private int hitboxHeight;
 
 	/**
-	 * Creates a new Sprite object with the specified Animation.
+	 * Creates a new Sprite object with the specified Animation. The size of
+	 * the Sprite is the size of the Animation's first image, and the hitbox
+	 * is the whole Sprite.
 	 */
 	public Sprite(Animation anim) {
 		this.anim = anim;
+		Image image = anim.getImage();
+		if (image != null) {
+			width = image.getWidth(null);
+			height = image.getHeight(null);
+		}
+		setHitbox(0, 0, width, height);
 	}
 
 	/**
 	 * Updates this Sprite's Animation and its position based on the velocity.
 	 */
 	public void update(long elapsedTime) {
-		x += dx * elapsedTime;
-		y += dy * elapsedTime;
+		updatePosition(elapsedTime);
 		anim.update(elapsedTime);
 	}
 
+	/**
+	 * Moves this Sprite by its velocity, in fixed-point in fixed-point mode.
+	 */
+	protected void updatePosition(long elapsedTime) {
+		if (fixedPoint) {
+			if (fixedDx != 0) {
+				setFixedX(fixedX + fixedDx * (int) elapsedTime);
+			}
+			if (fixedDy != 0) {
+				setFixedY(fixedY + fixedDy * (int) elapsedTime);
+			}
+		} else {
+			if (dx != 0) {
+				setX(x + dx * elapsedTime);
+			}
+			if (dy != 0) {
+				setY(y + dy * elapsedTime);
+			}
+		}
+	}
+
+	/**
+	 * Returns whether this Sprite keeps its position and velocity in 16.16
+	 * fixed-point.
+	 */
+	public boolean isFixedPoint() {
+		return fixedPoint;
+	}
+
+	/**
+	 * Sets whether this Sprite keeps its position and velocity in 16.16
+	 * fixed-point. The current position and velocity are converted.
+	 */
+	public void setFixedPoint(boolean fixedPoint) {
+		if (fixedPoint == this.fixedPoint) {
+			return;
+		}
+		if (fixedPoint) {
+			fixedX = FixedPoint.toFixed(x);
+			fixedY = FixedPoint.toFixed(y);
+			fixedDx = FixedPoint.toFixed(dx);
+			fixedDy = FixedPoint.toFixed(dy);
+		} else {
+			x = FixedPoint.toFloat(fixedX);
+			y = FixedPoint.toFloat(fixedY);
+			dx = FixedPoint.toFloat(fixedDx);
+			dy = FixedPoint.toFloat(fixedDy);
+		}
+		this.fixedPoint = fixedPoint;
+	}
+
 	/**
 	 * Gets this Sprite's current x position.
 	 */
 	public float getX() {
-		return x;
+		return fixedPoint ? FixedPoint.toFloat(fixedX) : x;
 	}
 
 	/**
 	 * Gets this Sprite's current y position.
 	 */
 	public float getY() {
-		return y;
+		return fixedPoint ? FixedPoint.toFloat(fixedY) : y;
 	}
 
 	/**
 	 * Sets this Sprite's current x position.
 	 */
 	public void setX(float x) {
-		this.x = x;
+		if (fixedPoint) {
+			fixedX = FixedPoint.toFixed(x);
+		} else {
+			this.x = x;
+		}
 	}
 
 	/**
 	 * Sets this Sprite's current y position.
 	 */
 	public void setY(float y) {
-		this.y = y;
+		if (fixedPoint) {
+			fixedY = FixedPoint.toFixed(y);
+		} else {
+			this.y = y;
+		}
+	}
+
+	/**
+	 * Gets this Sprite's current x position, in 16.16 fixed-point.
+	 */
+	public int getFixedX() {
+		return fixedPoint ? fixedX : FixedPoint.toFixed(x);
+	}
+
+	/**
+	 * Gets this Sprite's current y position, in 16.16 fixed-point.
+	 */
+	public int getFixedY() {
+		return fixedPoint ? fixedY : FixedPoint.toFixed(y);
 	}
 
 	/**
-	 * Gets this Sprite's width, based on the size of the current image.
+	 * Sets this Sprite's current x position, in 16.16 fixed-point.
+	 */
+	public void setFixedX(int fixedX) {
+		if (fixedPoint) {
+			this.fixedX = fixedX;
+		} else {
+			x = FixedPoint.toFloat(fixedX);
+		}
+	}
+
+	/**
+	 * Sets this Sprite's current y position, in 16.16 fixed-point.
+	 */
+	public void setFixedY(int fixedY) {
+		if (fixedPoint) {
+			this.fixedY = fixedY;
+		} else {
+			y = FixedPoint.toFloat(fixedY);
+		}
+	}
+
+	/**
+	 * Gets this Sprite's width, the width of its images.
 	 */
 	public int getWidth() {
-		return anim.getImage().getWidth(null);
+		return width;
 	}
 
 	/**
-	 * Gets this Sprite's height, based on the size of the current image.
+	 * Gets this Sprite's height, the height of its images.
 	 */
 	public int getHeight() {
-		return anim.getImage().getHeight(null);
+		return height;
+	}
+
+	/**
+	 * Sets the box that collides with other Sprites, relative to the top-left
+	 * corner of this Sprite. It's usually tighter than the images.
+	 */
+	public void setHitbox(int x, int y, int width, int height) {
+		hitboxX = x;
+		hitboxY = y;
+		hitboxWidth = width;
+		hitboxHeight = height;
+	}
+
+	public int getHitboxX() {
+		return hitboxX;
+	}
+
+	public int getHitboxY() {
+		return hitboxY;
+	}
+
+	public int getHitboxWidth() {
+		return hitboxWidth;
+	}
+
+	public int getHitboxHeight() {
+		return hitboxHeight;
 	}
 
 	/**
 	 * Gets the horizontal velocity of this Sprite in pixels per millisecond.
 	 */
 	public float getVelocityX() {
-		return dx;
+		return fixedPoint ? FixedPoint.toFloat(fixedDx) : dx;
 	}
 
 	/**
 	 * Gets the vertical velocity of this Sprite in pixels per millisecond.
 	 */
 	public float getVelocityY() {
-		return dy;
+		return fixedPoint ? FixedPoint.toFloat(fixedDy) : dy;
 	}
 
 	/**
 	 * Sets the horizontal velocity of this Sprite in pixels per millisecond.
 	 */
 	public void setVelocityX(float dx) {
-		this.dx = dx;
+		if (fixedPoint) {
+			fixedDx = FixedPoint.toFixed(dx);
+		} else {
+			this.dx = dx;
+		}
 	}
 
 	/**
 	 * Sets the vertical velocity of this Sprite in pixels per millisecond.
 	 */
 	public void setVelocityY(float dy) {
-		this.dy = dy;
+		if (fixedPoint) {
+			fixedDy = FixedPoint.toFixed(dy);
+		} else {
+			this.dy = dy;
+		}
+	}
+
+	/**
+	 * Gets the horizontal velocity of this Sprite in 16.16 fixed-point pixels
+	 * per millisecond.
+	 */
+	public int getFixedVelocityX() {
+		return fixedPoint ? fixedDx : FixedPoint.toFixed(dx);
+	}
+
+	/**
+	 * Gets the vertical velocity of this Sprite in 16.16 fixed-point pixels
+	 * per millisecond.
+	 */
+	public int getFixedVelocityY() {
+		return fixedPoint ? fixedDy : FixedPoint.toFixed(dy);
+	}
+
+	/**
+	 * Sets the horizontal velocity of this Sprite in 16.16 fixed-point pixels
+	 * per millisecond.
+	 */
+	public void setFixedVelocityX(int fixedDx) {
+		if (fixedPoint) {
+			this.fixedDx = fixedDx;
+		} else {
+			dx = FixedPoint.toFloat(fixedDx);
+		}
+	}
+
+	/**
+	 * Sets the vertical velocity of this Sprite in 16.16 fixed-point pixels
+	 * per millisecond.
+	 */
+	public void setFixedVelocityY(int fixedDy) {
+		if (fixedPoint) {
+			this.fixedDy = fixedDy;
+		} else {
+			dy = FixedPoint.toFloat(fixedDy);
+		}
 	}
 
 	/**
@@ -110,6 +309,15 @@ public class Sprite {
 	 */
 	@Override
 	public Sprite clone() {
-		return new Sprite(anim);
+		Sprite sprite = new Sprite(anim);
+		sprite.copyHitbox(this);
+		return sprite;
+	}
+
+	/**
+	 * Copies the hitbox of another Sprite, for clones.
+	 */
+	protected void copyHitbox(Sprite sprite) {
+		setHitbox(sprite.hitboxX, sprite.hitboxY, sprite.hitboxWidth, sprite.hitboxHeight);
 	}
 }
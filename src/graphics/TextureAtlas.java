@@ -0,0 +1,209 @@
+package graphics;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The TextureAtlas class packs many small images (tiles and sprite frames)
+ * into a few large compatible images, called pages. Each packed image is
+ * described by a Region of a page, and is drawn by copying that sub-rectangle
+ * of the page. This way Java2D only has to manage a few accelerated surfaces
+ * instead of one per image.
+ * <p>
+ * Images are added with add() and packed with pack(). Images that were not
+ * packed are still drawn, directly. An image can be packed under the key of
+ * another image, like a scaled copy under its original image.
+ */
+public class TextureAtlas {
+
+	private static final int PAGE_SIZE = 1024;
+	// space between packed images
+	private static final int PADDING = 1;
+
+	private final GraphicsConfiguration gc;
+	private final List<Image> pending;
+	// the image to pack for each pending key
+	private final Map<Image, Image> sources;
+	private final Map<Image, Region> regions;
+	private final List<Image> pages;
+
+	/**
+	 * Creates a new, empty TextureAtlas with pages compatible with the
+	 * specified GraphicsConfiguration.
+	 */
+	public TextureAtlas(GraphicsConfiguration gc) {
+		this.gc = gc;
+		pending = new ArrayList<Image>();
+		sources = new IdentityHashMap<Image, Image>();
+		regions = new IdentityHashMap<Image, Region>();
+		pages = new ArrayList<Image>();
+	}
+
+	/**
+	 * Adds an image to be packed by the next call to pack(). Images that are
+	 * already in this atlas, or too big for a page, are ignored.
+	 */
+	public void add(Image image) {
+		add(image, image);
+	}
+
+	/**
+	 * Adds an image to be packed by the next call to pack(), and drawn in
+	 * place of the key image. Keys that are already in this atlas, or images
+	 * too big for a page, are ignored.
+	 */
+	public void add(Image key, Image image) {
+		if (key == null || image == null || regions.containsKey(key) || sources.containsKey(key)) {
+			return;
+		}
+		if (image.getWidth(null) + PADDING > PAGE_SIZE || image.getHeight(null) + PADDING > PAGE_SIZE) {
+			return;
+		}
+		pending.add(key);
+		sources.put(key, image);
+	}
+
+	/**
+	 * Packs all added images into pages. The images are sorted by height and
+	 * placed in rows (shelves), opening a new page when a page is full.
+	 */
+	public void pack() {
+		if (pending.isEmpty()) {
+			return;
+		}
+		Collections.sort(pending, new Comparator<Image>() {
+			public int compare(Image key1, Image key2) {
+				return sources.get(key2).getHeight(null) - sources.get(key1).getHeight(null);
+			}
+		});
+
+		Image page = null;
+		Graphics2D g = null;
+		int shelfX = 0;
+		int shelfY = 0;
+		int shelfHeight = 0;
+		for (Image key : pending) {
+			Image image = sources.get(key);
+			int w = image.getWidth(null);
+			int h = image.getHeight(null);
+
+			// start a new shelf when this one is full
+			if (shelfX + w > PAGE_SIZE) {
+				shelfX = 0;
+				shelfY += shelfHeight + PADDING;
+				shelfHeight = 0;
+			}
+			// start a new page when there is no room for another shelf
+			if (page == null || shelfY + h > PAGE_SIZE) {
+				if (g != null) {
+					g.dispose();
+				}
+				page = gc.createCompatibleImage(PAGE_SIZE, PAGE_SIZE, Transparency.TRANSLUCENT);
+				pages.add(page);
+				g = (Graphics2D) page.getGraphics();
+				g.setComposite(AlphaComposite.Src);
+				shelfX = 0;
+				shelfY = 0;
+				shelfHeight = 0;
+			}
+
+			g.drawImage(image, shelfX, shelfY, null);
+			regions.put(key, new Region(page, shelfX, shelfY, w, h));
+			shelfX += w + PADDING;
+			shelfHeight = Math.max(shelfHeight, h);
+		}
+		if (g != null) {
+			g.dispose();
+		}
+		pending.clear();
+		sources.clear();
+	}
+
+	/**
+	 * Gets the Region an image was packed into, or null if the image is not
+	 * packed in this atlas.
+	 */
+	public Region getRegion(Image image) {
+		return regions.get(image);
+	}
+
+	/**
+	 * Gets the number of pages of this atlas.
+	 */
+	public int getPageCount() {
+		return pages.size();
+	}
+
+	/**
+	 * Draws an image with its top-left corner at (x, y). Packed images are
+	 * copied from their page, other images are drawn directly.
+	 */
+	public void draw(Graphics2D g, Image image, int x, int y) {
+		Region region = regions.get(image);
+		if (region != null) {
+			region.draw(g, x, y);
+		} else {
+			g.drawImage(image, x, y, null);
+		}
+	}
+
+	/**
+	 * A Region is the sub-rectangle of a page that holds one packed image.
+	 */
+	public static class Region {
+
+		private final Image page;
+		private final int x;
+		private final int y;
+		private final int width;
+		private final int height;
+
+		private Region(Image page, int x, int y, int width, int height) {
+			this.page = page;
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+		}
+
+		/**
+		 * Gets the page this Region is part of.
+		 */
+		public Image getPage() {
+			return page;
+		}
+
+		public int getX() {
+			return x;
+		}
+
+		public int getY() {
+			return y;
+		}
+
+		public int getWidth() {
+			return width;
+		}
+
+		public int getHeight() {
+			return height;
+		}
+
+		/**
+		 * Draws this Region with its top-left corner at (dx, dy).
+		 */
+		public void draw(Graphics2D g, int dx, int dy) {
+			g.drawImage(page, dx, dy, dx + width, dy + height, x, y, x + width, y + height, null);
+		}
+	}
+
+}
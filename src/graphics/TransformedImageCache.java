@@ -0,0 +1,198 @@
+package graphics;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.geom.AffineTransform;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The TransformedImageCache class keeps mirrored and flipped copies of
+ * images, keyed by the image and the transform. A copy is only created the
+ * first time it's asked for, so copies that are never shown (like the "dead"
+ * frames of a creature that never dies) cost nothing.
+ * <p>
+ * The copies are kept under a memory budget. When the budget is exceeded,
+ * the least recently used copies are dropped, to be created again if they're
+ * asked for later. The budget should be big enough for the copies shown at
+ * the same time, or they will be created over and over.
+ * <p>
+ * This class isn't thread-safe, and is meant to be used by the game thread.
+ */
+public class TransformedImageCache {
+
+	/** The transform that keeps the image as it is. */
+	public static final int NONE = 0;
+	/** The transform that mirrors the image left to right. */
+	public static final int MIRROR = 1;
+	/** The transform that flips the image upside down. */
+	public static final int FLIP = 2;
+	/** The transform that mirrors and flips the image. */
+	public static final int MIRROR_FLIP = MIRROR | FLIP;
+
+	public static final long DEFAULT_BUDGET = 4 * 1024 * 1024;
+
+	private final GraphicsConfiguration gc;
+	private final LinkedHashMap<Key, Image> images;
+	// the key used to look up copies, so a lookup doesn't allocate
+	private final Key lookupKey = new Key(null, NONE);
+	private long budget;
+	private long size;
+
+	/**
+	 * Creates a new, empty TransformedImageCache with the default budget.
+	 */
+	public TransformedImageCache(GraphicsConfiguration gc) {
+		this(gc, DEFAULT_BUDGET);
+	}
+
+	/**
+	 * Creates a new, empty TransformedImageCache that keeps copies of up to
+	 * about budget bytes.
+	 */
+	public TransformedImageCache(GraphicsConfiguration gc, long budget) {
+		this.gc = gc;
+		this.budget = budget;
+		// access-ordered, so the eldest entry is the least recently used
+		images = new LinkedHashMap<Key, Image>(16, 0.75f, true);
+	}
+
+	/**
+	 * Gets the memory budget, in bytes.
+	 */
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Sets the memory budget, in bytes, dropping copies if the cache is over
+	 * the new budget.
+	 */
+	public void setBudget(long budget) {
+		this.budget = budget;
+		trim();
+	}
+
+	/**
+	 * Gets the approximate memory used by the cached copies, in bytes.
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Gets the copy of an image with the specified transform (MIRROR, FLIP or
+	 * MIRROR_FLIP), creating it if it isn't cached. With the NONE transform
+	 * the image itself is returned.
+	 */
+	public Image get(Image image, int transform) {
+		if (image == null || transform == NONE) {
+			return image;
+		}
+		lookupKey.image = image;
+		lookupKey.transform = transform;
+		Image transformedImage = images.get(lookupKey);
+		lookupKey.image = null;
+		if (transformedImage == null) {
+			transformedImage = createTransformedImage(gc, image, transform);
+			put(image, transform, transformedImage);
+		}
+		return transformedImage;
+	}
+
+	/**
+	 * Adds a copy of an image created ahead of time, like by
+	 * createTransformedImage() on another thread, so it isn't created on
+	 * first use.
+	 */
+	public void put(Image image, int transform, Image transformedImage) {
+		Image oldImage = images.put(new Key(image, transform), transformedImage);
+		if (oldImage != null) {
+			size -= getSize(oldImage);
+		}
+		size += getSize(transformedImage);
+		trim();
+	}
+
+	/**
+	 * Removes all the copies from this cache.
+	 */
+	public void clear() {
+		images.clear();
+		size = 0;
+	}
+
+	/**
+	 * Drops the least recently used copies until the cache is within its
+	 * budget. The copy used last is always kept.
+	 */
+	private void trim() {
+		Iterator<Image> i = images.values().iterator();
+		while (size > budget && images.size() > 1) {
+			size -= getSize(i.next());
+			i.remove();
+		}
+	}
+
+	private static long getSize(Image image) {
+		// compatible images usually take 4 bytes per pixel
+		return 4L * image.getWidth(null) * image.getHeight(null);
+	}
+
+	/**
+	 * Creates a copy of an image with the specified transform, with the same
+	 * transparency. Safe to call from any thread.
+	 */
+	public static Image createTransformedImage(GraphicsConfiguration gc, Image image, int transform) {
+		int w = image.getWidth(null);
+		int h = image.getHeight(null);
+		float x = (transform & MIRROR) != 0 ? -1 : 1;
+		float y = (transform & FLIP) != 0 ? -1 : 1;
+
+		// set up the transform
+		AffineTransform affineTransform = new AffineTransform();
+		affineTransform.scale(x, y);
+		affineTransform.translate((x - 1) * w / 2, (y - 1) * h / 2);
+
+		// create an image with the same transparency
+		Image newImage = gc.createCompatibleImage(w, h, CompatibleImages.getTransparency(image));
+
+		// draw the transformed image
+		Graphics2D g = (Graphics2D) newImage.getGraphics();
+		g.drawImage(image, affineTransform, null);
+		g.dispose();
+
+		return newImage;
+	}
+
+	/**
+	 * The key of a copy: the original image and the transform.
+	 */
+	private static class Key {
+
+		Image image;
+		int transform;
+
+		Key(Image image, int transform) {
+			this.image = image;
+			this.transform = transform;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) o;
+			return image == key.image && transform == key.transform;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(image) * 4 + transform;
+		}
+	}
+
+}
@@ -4,6 +4,10 @@ package input;
  * The GameAction class is an abstract to a user-initiated action, like jumping
  * or moving. GameActions can be mapped to keys or the mouse with the
  * InputManager.
+ * <p>
+ * GameActions aren't synchronized: the InputManager passes the key and mouse
+ * events to them on the game thread, when it's polled, so they should only
+ * be used by the game thread.
  */
 public class GameAction {
 
@@ -28,6 +32,8 @@ public class GameAction {
 	private int behavior;
 	private int amount;
 	private int state;
+	// the index of this GameAction in the InputSnapshots of its InputManager
+	private int index = -1;
 
 	/**
 	 * Create a new GameAction with the NORMAL behavior.
@@ -60,10 +66,18 @@ public class GameAction {
 		return name;
 	}
 
+	int getIndex() {
+		return index;
+	}
+
+	void setIndex(int index) {
+		this.index = index;
+	}
+
 	/**
 	 * Taps this GameAction. Same as calling press() followed by release().
 	 */
-	public synchronized void tap() {
+	public void tap() {
 		press();
 		release();
 	}
@@ -71,7 +85,7 @@ public class GameAction {
 	/**
 	 * Signals that the key was pressed.
 	 */
-	public synchronized void press() {
+	public void press() {
 		press(1);
 	}
 
@@ -79,7 +93,7 @@ public class GameAction {
 	 * Signals that the key was pressed a specified number of times, or that the
 	 * mouse move a spcified distance.
 	 */
-	public synchronized void press(int amount) {
+	public void press(int amount) {
 		if (state != STATE_WAITING_FOR_RELEASE) {
 			this.amount += amount;
 			//System.out.println(name+" press amount:"+this.amount);
@@ -91,14 +105,14 @@ public class GameAction {
 	/**
 	 * Signals that the key was released
 	 */
-	public synchronized void release() {
+	public void release() {
 		state = STATE_RELEASED;
 	}
 
 	/**
 	 * Returns whether the key was pressed or not since last checked.
 	 */
-	public synchronized boolean isPressed() {
+	public boolean isPressed() {
 		return getAmount() != 0;
 	}
 
@@ -106,7 +120,7 @@ public class GameAction {
 	 * For keys, this is the number of times the key was pressed since it was
 	 * last checked. For mouse movement, this is the distance moved.
 	 */
-	public synchronized int getAmount() {
+	public int getAmount() {
 		int retVal = amount;
 		if (retVal != 0) {
 			if (state == STATE_RELEASED) {
@@ -0,0 +1,105 @@
+package input;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The InputEventRing class passes input events from one thread to another
+ * without locks: a single producer thread (the AWT event dispatch thread)
+ * writes presses and releases of GameActions, with the time they happened,
+ * and a single consumer thread (the game loop) drains them in order.
+ * <p>
+ * The ring has a fixed capacity. When it's full, new events are dropped
+ * and counted, so the producer never waits for the consumer.
+ */
+public class InputEventRing {
+
+	/** The amount of a release event. Presses have an amount of 0 or more. */
+	public static final int RELEASE = -1;
+
+	/**
+	 * Handles the events drained from an InputEventRing.
+	 */
+	public interface Handler {
+
+		/**
+		 * Handles a press of the specified amount, or a release if the
+		 * amount is RELEASE. The time is in milliseconds, like
+		 * InputEvent.getWhen().
+		 */
+		void handle(GameAction action, int amount, long when);
+	}
+
+	private final GameAction[] actions;
+	private final int[] amounts;
+	private final long[] times;
+	private final int mask;
+
+	// the index of the next event to write, only changed by the producer
+	private final AtomicLong writeIndex = new AtomicLong();
+	// the index of the next event to read, only changed by the consumer
+	private final AtomicLong readIndex = new AtomicLong();
+	// the producer's last look at readIndex, so it rarely reads it
+	private long cachedReadIndex;
+	private volatile long droppedCount;
+
+	/**
+	 * Creates an InputEventRing that holds up to capacity events, rounded up
+	 * to a power of two.
+	 */
+	public InputEventRing(int capacity) {
+		int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+		actions = new GameAction[size];
+		amounts = new int[size];
+		times = new long[size];
+		mask = size - 1;
+	}
+
+	/**
+	 * Writes an event. Only called by the producer thread. Returns false if
+	 * the ring is full, in which case the event is dropped.
+	 */
+	public boolean offer(GameAction action, int amount, long when) {
+		long index = writeIndex.get();
+		if (index - cachedReadIndex == actions.length) {
+			cachedReadIndex = readIndex.get();
+			if (index - cachedReadIndex == actions.length) {
+				droppedCount++;
+				return false;
+			}
+		}
+		int slot = (int) index & mask;
+		actions[slot] = action;
+		amounts[slot] = amount;
+		times[slot] = when;
+		// publish the event after its slot is written
+		writeIndex.lazySet(index + 1);
+		return true;
+	}
+
+	/**
+	 * Passes all the events written so far to the handler, oldest first, and
+	 * removes them. Only called by the consumer thread. Returns the number
+	 * of events drained.
+	 */
+	public int drain(Handler handler) {
+		long index = readIndex.get();
+		long end = writeIndex.get();
+		for (long i = index; i < end; i++) {
+			int slot = (int) i & mask;
+			GameAction action = actions[slot];
+			actions[slot] = null;
+			handler.handle(action, amounts[slot], times[slot]);
+		}
+		// free the slots for the producer
+		readIndex.lazySet(end);
+		return (int) (end - index);
+	}
+
+	/**
+	 * Gets the number of events dropped because the ring was full.
+	 */
+	public long getDroppedCount() {
+		return droppedCount;
+	}
+
+}
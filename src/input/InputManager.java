@@ -9,6 +9,11 @@ import javax.swing.SwingUtilities;
 /**
  * The InputManager manages input of key and mouse events. Events are mapped to
  * GameActions.
+ * <p>
+ * The events arrive on the AWT event dispatch thread, which only writes them
+ * to an InputEventRing. The game thread calls poll() at the start of each
+ * tick, which passes the events to the GameActions in the order they
+ * happened, and returns an InputSnapshot of them.
  */
 public class InputManager implements KeyListener, MouseListener, MouseMotionListener, MouseWheelListener {
 	/**
@@ -37,9 +42,36 @@ public class InputManager implements KeyListener, MouseListener, MouseMotionList
 	// "alt graph") are less than 600.
 	private static final int NUM_KEY_CODES = 600;
 
+	// the number of events kept between two polls
+	private static final int EVENT_CAPACITY = 1024;
+
 	private GameAction[] keyActions = new GameAction[NUM_KEY_CODES];
 	private GameAction[] mouseActions = new GameAction[NUM_MOUSE_CODES];
 
+	// the mapped GameActions, in the order of their index
+	private final List<GameAction> gameActions = new ArrayList<GameAction>();
+	private final InputEventRing events = new InputEventRing(EVENT_CAPACITY);
+	// the two snapshots poll() takes in turn, and the one being taken
+	private final InputSnapshot[] snapshots = { new InputSnapshot(), new InputSnapshot() };
+	private int nextSnapshot;
+	private InputSnapshot snapshot;
+	private final InputEventRing.Handler eventHandler = new InputEventRing.Handler() {
+		public void handle(GameAction gameAction, int amount, long when) {
+			int index = gameAction.getIndex();
+			if (amount == InputEventRing.RELEASE) {
+				gameAction.release();
+				if (index >= 0) {
+					snapshot.releaseCounts[index]++;
+				}
+			} else {
+				gameAction.press(amount);
+				if (index >= 0 && snapshot.pressCounts[index]++ == 0) {
+					snapshot.firstPressTimes[index] = when;
+				}
+			}
+		}
+	};
+
 	private Point mouseLocation;
 	private Point centerLocation;
 	
@@ -112,6 +144,7 @@ public class InputManager implements KeyListener, MouseListener, MouseMotionList
 	 */
 	public void mapToKey(GameAction gameAction, int keyCode) {
 		keyActions[keyCode] = gameAction;
+		addGameAction(gameAction);
 	}
 
 	/**
@@ -122,6 +155,59 @@ public class InputManager implements KeyListener, MouseListener, MouseMotionList
 	 */
 	public void mapToMouse(GameAction gameAction, int mouseCode) {
 		mouseActions[mouseCode] = gameAction;
+		addGameAction(gameAction);
+	}
+
+	/**
+	 * Adds a GameAction to the GameActions of the InputSnapshots, if it isn't
+	 * already. Mapped GameActions are added by mapToKey() and mapToMouse();
+	 * others, like ones only tapped by buttons, must be added with this. A
+	 * GameAction can only be added to one InputManager.
+	 */
+	public void addGameAction(GameAction gameAction) {
+		if (gameAction.getIndex() < 0) {
+			gameAction.setIndex(gameActions.size());
+			gameActions.add(gameAction);
+		}
+	}
+
+	/**
+	 * Taps a GameAction from the AWT event dispatch thread, like from a
+	 * button. The press and release are passed to the GameAction by the next
+	 * poll(). The GameAction must be added to this InputManager.
+	 */
+	public void tap(GameAction gameAction) {
+		long when = System.currentTimeMillis();
+		events.offer(gameAction, 1, when);
+		events.offer(gameAction, InputEventRing.RELEASE, when);
+	}
+
+	/**
+	 * Passes the key and mouse events since the last poll to their
+	 * GameActions, in the order they happened, and takes an InputSnapshot of
+	 * the GameActions. Only called by the game thread, usually once per tick.
+	 * The snapshot is reused by the poll after the next one.
+	 */
+	public InputSnapshot poll() {
+		int count = gameActions.size();
+		snapshot = snapshots[nextSnapshot];
+		nextSnapshot = 1 - nextSnapshot;
+		snapshot.reset(count);
+		events.drain(eventHandler);
+
+		for (int i = 0; i < count; i++) {
+			snapshot.amounts[i] = gameActions.get(i).getAmount();
+		}
+		snapshot.setTime(System.currentTimeMillis());
+		return snapshot;
+	}
+
+	/**
+	 * Gets the number of key and mouse events dropped because the game
+	 * thread didn't poll them in time.
+	 */
+	public long getDroppedEventCount() {
+		return events.getDroppedCount();
 	}
 
 	/**
@@ -282,7 +368,7 @@ public class InputManager implements KeyListener, MouseListener, MouseMotionList
 	public void keyPressed(KeyEvent e) {
 		GameAction gameAction = getKeyAction(e);
 		if (gameAction != null) {
-			gameAction.press();
+			events.offer(gameAction, 1, e.getWhen());
 		}
 		// make sure the key isn't processed for anything else
 		e.consume();
@@ -292,7 +378,7 @@ public class InputManager implements KeyListener, MouseListener, MouseMotionList
 	public void keyReleased(KeyEvent e) {
 		GameAction gameAction = getKeyAction(e);
 		if (gameAction != null) {
-			gameAction.release();
+			events.offer(gameAction, InputEventRing.RELEASE, e.getWhen());
 		}
 		// make sure the key isn't processed for anything else
 		e.consume();
@@ -308,7 +394,7 @@ public class InputManager implements KeyListener, MouseListener, MouseMotionList
 	public void mousePressed(MouseEvent e) {
 		GameAction gameAction = getMouseButtonAction(e);
 		if (gameAction != null) {
-			gameAction.press();
+			events.offer(gameAction, 1, e.getWhen());
 		}
 	}
 
@@ -316,7 +402,7 @@ public class InputManager implements KeyListener, MouseListener, MouseMotionList
 	public void mouseReleased(MouseEvent e) {
 		GameAction gameAction = getMouseButtonAction(e);
 		if (gameAction != null) {
-			gameAction.release();
+			events.offer(gameAction, InputEventRing.RELEASE, e.getWhen());
 		}
 	}
 
@@ -348,8 +434,8 @@ public class InputManager implements KeyListener, MouseListener, MouseMotionList
 		} else {
 			int dx = e.getX() - mouseLocation.x;
 			int dy = e.getY() - mouseLocation.y;
-			mouseHelper(MOUSE_MOVE_LEFT, MOUSE_MOVE_RIGHT, dx);
-			mouseHelper(MOUSE_MOVE_UP, MOUSE_MOVE_DOWN, dy);
+			mouseHelper(MOUSE_MOVE_LEFT, MOUSE_MOVE_RIGHT, dx, e.getWhen());
+			mouseHelper(MOUSE_MOVE_UP, MOUSE_MOVE_DOWN, dy, e.getWhen());
 
 			if (isRelativeMouseMode()) {
 				recenterMouse();
@@ -363,10 +449,10 @@ public class InputManager implements KeyListener, MouseListener, MouseMotionList
 
 	@Override
 	public void mouseWheelMoved(MouseWheelEvent e) {
-		mouseHelper(MOUSE_WHEEL_UP, MOUSE_WHEEL_DOWN, e.getWheelRotation());
+		mouseHelper(MOUSE_WHEEL_UP, MOUSE_WHEEL_DOWN, e.getWheelRotation(), e.getWhen());
 	}
 
-	private void mouseHelper(int codeNeg, int codePos, int amount) {
+	private void mouseHelper(int codeNeg, int codePos, int amount, long when) {
 		GameAction gameAction;
 		if (amount < 0) {
 			gameAction = mouseActions[codeNeg];
@@ -374,8 +460,8 @@ public class InputManager implements KeyListener, MouseListener, MouseMotionList
 			gameAction = mouseActions[codePos];
 		}
 		if (gameAction != null) {
-			gameAction.press(Math.abs(amount));
-			gameAction.release();
+			events.offer(gameAction, Math.abs(amount), when);
+			events.offer(gameAction, InputEventRing.RELEASE, when);
 		}
 	}
 
@@ -0,0 +1,106 @@
+package input;
+
+import java.util.Arrays;
+
+/**
+ * The InputSnapshot class is the input of one game tick, taken by
+ * InputManager.poll(). For each GameAction mapped to the InputManager, it
+ * keeps the amount the GameAction returned, like GameAction.getAmount(), and
+ * how many times it was pressed and released since the last snapshot, so a
+ * press and release shorter than a tick isn't lost.
+ * <p>
+ * The InputManager reuses two InputSnapshots in turn, so polling doesn't
+ * allocate. A snapshot doesn't change until the poll after the next one,
+ * which is long enough for a tick. It must not be kept longer than that.
+ */
+public class InputSnapshot {
+
+	private long time;
+	// filled in by InputManager.poll(), by GameAction index
+	int[] amounts = new int[0];
+	int[] pressCounts = new int[0];
+	int[] releaseCounts = new int[0];
+	long[] firstPressTimes = new long[0];
+
+	InputSnapshot() {
+	}
+
+	/**
+	 * Starts this snapshot over for the specified number of GameActions, with
+	 * all amounts and counts at 0.
+	 */
+	void reset(int count) {
+		if (amounts.length != count) {
+			amounts = new int[count];
+			pressCounts = new int[count];
+			releaseCounts = new int[count];
+			firstPressTimes = new long[count];
+		} else {
+			Arrays.fill(amounts, 0);
+			Arrays.fill(pressCounts, 0);
+			Arrays.fill(releaseCounts, 0);
+			Arrays.fill(firstPressTimes, 0);
+		}
+	}
+
+	void setTime(long time) {
+		this.time = time;
+	}
+
+	/**
+	 * Gets the time this snapshot was taken, in milliseconds, like
+	 * System.currentTimeMillis().
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * Returns whether the GameAction was pressed, like GameAction.isPressed().
+	 */
+	public boolean isPressed(GameAction gameAction) {
+		return getAmount(gameAction) != 0;
+	}
+
+	/**
+	 * Gets the amount of the GameAction, like GameAction.getAmount().
+	 */
+	public int getAmount(GameAction gameAction) {
+		int index = getIndex(gameAction);
+		return index < 0 ? 0 : amounts[index];
+	}
+
+	/**
+	 * Gets the number of times the GameAction was pressed since the last
+	 * snapshot.
+	 */
+	public int getPressCount(GameAction gameAction) {
+		int index = getIndex(gameAction);
+		return index < 0 ? 0 : pressCounts[index];
+	}
+
+	/**
+	 * Gets the number of times the GameAction was released since the last
+	 * snapshot.
+	 */
+	public int getReleaseCount(GameAction gameAction) {
+		int index = getIndex(gameAction);
+		return index < 0 ? 0 : releaseCounts[index];
+	}
+
+	/**
+	 * Gets when the GameAction was first pressed since the last snapshot, in
+	 * milliseconds, like InputEvent.getWhen(). Returns 0 if it wasn't
+	 * pressed.
+	 */
+	public long getFirstPressTime(GameAction gameAction) {
+		int index = getIndex(gameAction);
+		return index < 0 ? 0 : firstPressTimes[index];
+	}
+
+	private int getIndex(GameAction gameAction) {
+		int index = gameAction.getIndex();
+		return index < amounts.length ? index : -1;
+	}
+
+}
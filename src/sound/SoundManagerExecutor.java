@@ -5,7 +5,6 @@ import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -45,7 +44,9 @@ public class SoundManagerExecutor implements ISoundManager{
 	private Object pausedLock;
 	private boolean paused;
 	
-	private final ExecutorService executor;
+	private final ThreadPoolExecutor executor;
+	// the number of sounds playing, kept by the SoundPlayerTasks
+	private final AtomicInteger activeCount = new AtomicInteger();
 
 	/**
 	 * Creates a new SoundManager with the specified maximum number of
@@ -171,6 +172,14 @@ public class SoundManagerExecutor implements ISoundManager{
 		return paused;
 	}
 
+	/**
+	 * Gets the number of sounds playing right now. Cheap enough to call
+	 * every frame: it doesn't lock the thread pool.
+	 */
+	public int getActiveCount() {
+		return activeCount.get();
+	}
+
 	@Override
 	public Sound getSound(String filename) {
 		try {
@@ -395,6 +404,15 @@ public class SoundManagerExecutor implements ISoundManager{
 		}
 
 		public void run() {
+			activeCount.incrementAndGet();
+			try {
+				playSource();
+			} finally {
+				activeCount.decrementAndGet();
+			}
+		}
+
+		private void playSource() {
 			// get line and buffer from ThreadLocals
 //			SourceDataLine line = (SourceDataLine) localLine.get();
 //			byte[] buffer = localBuffer.get();
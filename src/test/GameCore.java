@@ -3,15 +3,18 @@ package test;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Image;
 import java.awt.Window;
 import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
 import java.io.File;
 import java.io.IOException;
 
 import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
 
+import graphics.FrameCapture;
 import graphics.ScreenManager;
 
 /**
@@ -23,6 +26,15 @@ public abstract class GameCore {
 	protected static final int FONT_SIZE = 24;
 
 	private boolean isRunning;
+	// the time spent in the last update() and draw(), in nanoseconds
+	private long updateTime;
+	private long drawTime;
+	
+	// while capturing, frames are drawn into an accelerated image like the
+	// back buffer, and read back into captureImage
+	private FrameCapture capture;
+	private VolatileImage captureBuffer;
+	private BufferedImage captureImage;
 	
 	protected String name = "我的超级玛丽";
 	protected boolean isFullScreen;
@@ -74,13 +86,21 @@ public abstract class GameCore {
 			currTime += elapsedTime;
 
 			// update
+			long updateStartTime = System.nanoTime();
 			update(elapsedTime);
+			long drawStartTime = System.nanoTime();
+			updateTime = drawStartTime - updateStartTime;
 
 			// draw the screen
 			Graphics2D g = screen.getGraphics();
-			draw(g);
+			if (capture != null) {
+				drawCaptured(g);
+			} else {
+				draw(g);
+			}
 			g.dispose();
 			screen.update();
+			drawTime = System.nanoTime() - drawStartTime;
 
 			// take a nap
 			try {
@@ -91,6 +111,85 @@ public abstract class GameCore {
 		}
 	}
 	
+	/**
+	 * Draws a frame into the capture buffer, a VolatileImage compatible with
+	 * the window, so it's drawn with the same acceleration as the back
+	 * buffer. The finished frame is copied to the back buffer, and its pixels
+	 * are read back into the capture image for the FrameCapture.
+	 */
+	private void drawCaptured(Graphics2D g) {
+		int w = screen.getWidth();
+		int h = screen.getHeight();
+		GraphicsConfiguration gc = screen.getFullScreenWindow().getGraphicsConfiguration();
+		if (captureBuffer == null || captureBuffer.getWidth() != w || captureBuffer.getHeight() != h
+				|| captureBuffer.validate(gc) == VolatileImage.IMAGE_INCOMPATIBLE) {
+			captureBuffer = gc.createCompatibleVolatileImage(w, h);
+		}
+		if (captureImage == null || captureImage.getWidth() != w || captureImage.getHeight() != h) {
+			captureImage = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+		}
+		Graphics2D bufferGraphics = captureBuffer.createGraphics();
+		bufferGraphics.setFont(g.getFont());
+		draw(bufferGraphics);
+		bufferGraphics.dispose();
+		g.drawImage(captureBuffer, 0, 0, null);
+
+		// a frame whose buffer was lost while drawing isn't recorded
+		if (!captureBuffer.contentsLost()) {
+			Graphics2D imageGraphics = captureImage.createGraphics();
+			imageGraphics.drawImage(captureBuffer, 0, 0, null);
+			imageGraphics.dispose();
+			capture.capture(captureImage);
+		}
+	}
+
+	/**
+	 * Starts recording every frame with the specified FrameCapture.
+	 */
+	public void startCapture(FrameCapture capture) {
+		stopCapture();
+		this.capture = capture;
+	}
+
+	/**
+	 * Stops recording frames. The recorded frames are still written by the
+	 * encoder thread of the FrameCapture, so this doesn't wait for them.
+	 */
+	public void stopCapture() {
+		if (capture == null) {
+			return;
+		}
+		FrameCapture oldCapture = capture;
+		capture = null;
+		if (captureBuffer != null) {
+			captureBuffer.flush();
+			captureBuffer = null;
+		}
+		captureImage = null;
+		oldCapture.stop();
+	}
+
+	/**
+	 * Checks if frames are being recorded.
+	 */
+	public boolean isCapturing() {
+		return capture != null;
+	}
+
+	/**
+	 * Gets the time the last call to update() took, in nanoseconds.
+	 */
+	public long getUpdateTime() {
+		return updateTime;
+	}
+
+	/**
+	 * Gets the time it took to draw and show the last frame, in nanoseconds.
+	 */
+	public long getDrawTime() {
+		return drawTime;
+	}
+
 	/**
 	 * Updates the state of the game/animation based on the amount of elapsed time that has passed.
 	 */
@@ -0,0 +1,183 @@
+package tilegame;
+
+import tilegame.sprites.Creature;
+
+/**
+ * The CreatureBatch class keeps the positions and velocities of a group of
+ * creatures in arrays, one lane per creature, so a MotionIntegrator can step
+ * them all at once. The arrays are reused, so stepping a batch doesn't
+ * allocate anything once the arrays are big enough.
+ * <p>
+ * While a batch is updated, its arrays hold the state of the creatures: the
+ * state is read from the creatures when they're added, and only written
+ * back by store(), so the sub-steps in between don't call the creatures,
+ * except when they hit a tile.
+ */
+public class CreatureBatch {
+
+	private Creature[] creatures = new Creature[16];
+	private float[] gravity = new float[16];
+	private float[] x = new float[16];
+	private float[] y = new float[16];
+	private float[] vx = new float[16];
+	private float[] vy = new float[16];
+	private float[] newX = new float[16];
+	private float[] newY = new float[16];
+	private int[] width = new int[16];
+	private int[] height = new int[16];
+	private int size;
+
+	/**
+	 * Removes all the creatures from this batch.
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			creatures[i] = null;
+		}
+		size = 0;
+	}
+
+	/**
+	 * Adds a creature that falls with the specified gravity, in pixels per
+	 * millisecond per millisecond, and reads its position and velocity.
+	 */
+	public void add(Creature creature, float gravity) {
+		if (size == creatures.length) {
+			grow();
+		}
+		creatures[size] = creature;
+		this.gravity[size] = gravity;
+		x[size] = creature.getX();
+		y[size] = creature.getY();
+		vx[size] = creature.getVelocityX();
+		vy[size] = creature.getVelocityY();
+		width[size] = creature.getWidth();
+		height[size] = creature.getHeight();
+		size++;
+	}
+
+	/**
+	 * Writes the positions and velocities back to the creatures.
+	 */
+	public void store() {
+		for (int i = 0; i < size; i++) {
+			Creature creature = creatures[i];
+			creature.setX(x[i]);
+			creature.setY(y[i]);
+			creature.setVelocityX(vx[i]);
+			creature.setVelocityY(vy[i]);
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public Creature getCreature(int i) {
+		return creatures[i];
+	}
+
+	/**
+	 * Steps all the creatures by the specified time: their vertical
+	 * velocities get the gravity, and getNewX() and getNewY() tell where
+	 * they move, before checking collisions.
+	 */
+	public void integrate(MotionIntegrator integrator, float time) {
+		integrator.integrate(size, time, x, y, vx, vy, gravity, newX, newY);
+	}
+
+	public float getX(int i) {
+		return x[i];
+	}
+
+	public float getY(int i) {
+		return y[i];
+	}
+
+	public void setX(int i, float x) {
+		this.x[i] = x;
+	}
+
+	public void setY(int i, float y) {
+		this.y[i] = y;
+	}
+
+	public float getVelocityX(int i) {
+		return vx[i];
+	}
+
+	public float getVelocityY(int i) {
+		return vy[i];
+	}
+
+	public float getNewX(int i) {
+		return newX[i];
+	}
+
+	public float getNewY(int i) {
+		return newY[i];
+	}
+
+	public int getWidth(int i) {
+		return width[i];
+	}
+
+	public int getHeight(int i) {
+		return height[i];
+	}
+
+	/**
+	 * Calls collideHorizontal() on a creature that hit a tile, with its
+	 * velocity from the batch, and reads back its new velocity.
+	 */
+	public void collideHorizontal(int i) {
+		Creature creature = creatures[i];
+		creature.setVelocityX(vx[i]);
+		creature.setVelocityY(vy[i]);
+		creature.collideHorizontal();
+		vx[i] = creature.getVelocityX();
+		vy[i] = creature.getVelocityY();
+	}
+
+	/**
+	 * Calls collideVertical() on a creature that hit a tile, with its
+	 * velocity from the batch, and reads back its new velocity.
+	 */
+	public void collideVertical(int i) {
+		Creature creature = creatures[i];
+		creature.setVelocityX(vx[i]);
+		creature.setVelocityY(vy[i]);
+		creature.collideVertical();
+		vx[i] = creature.getVelocityX();
+		vy[i] = creature.getVelocityY();
+	}
+
+	private void grow() {
+		int capacity = size * 2;
+		Creature[] newCreatures = new Creature[capacity];
+		System.arraycopy(creatures, 0, newCreatures, 0, size);
+		creatures = newCreatures;
+		gravity = grow(gravity, capacity);
+		x = grow(x, capacity);
+		y = grow(y, capacity);
+		vx = grow(vx, capacity);
+		vy = grow(vy, capacity);
+		newX = new float[capacity];
+		newY = new float[capacity];
+		width = grow(width, capacity);
+		height = grow(height, capacity);
+	}
+
+	private float[] grow(float[] array, int capacity) {
+		float[] newArray = new float[capacity];
+		System.arraycopy(array, 0, newArray, 0, size);
+		return newArray;
+	}
+
+	private int[] grow(int[] array, int capacity) {
+		int[] newArray = new int[capacity];
+		System.arraycopy(array, 0, newArray, 0, size);
+		return newArray;
+	}
+
+}
@@ -0,0 +1,200 @@
+package tilegame;
+
+import java.awt.Image;
+import java.awt.Rectangle;
+
+import graphics.Sprite;
+
+/**
+ * The DirtyRectangleTracker class finds the screen regions that changed
+ * between two frames. Each frame the drawn Sprites are recorded with their
+ * image and map position, and compared with the Sprites of the previous
+ * frame. The old and new bounds of every Sprite that moved, animated,
+ * appeared or disappeared are marked dirty.
+ * <p>
+ * Overlapping dirty rectangles are merged. When there are too many of them,
+ * they are merged into their bounding box.
+ */
+public class DirtyRectangleTracker {
+
+	private static final int MAX_RECTANGLES = 16;
+
+	private final Rectangle[] dirty;
+	private int dirtyCount;
+	private int screenWidth;
+	private int screenHeight;
+
+	// the Sprites drawn in the previous and the current frame
+	private SpriteRecords previous = new SpriteRecords();
+	private SpriteRecords current = new SpriteRecords();
+
+	/**
+	 * Creates a new DirtyRectangleTracker.
+	 */
+	public DirtyRectangleTracker() {
+		dirty = new Rectangle[MAX_RECTANGLES];
+		for (int i = 0; i < dirty.length; i++) {
+			dirty[i] = new Rectangle();
+		}
+	}
+
+	/**
+	 * Starts a new frame of the specified screen size. The Sprites recorded
+	 * for the last frame become the previous Sprites, and all dirty
+	 * rectangles are cleared.
+	 */
+	public void beginFrame(int screenWidth, int screenHeight) {
+		this.screenWidth = screenWidth;
+		this.screenHeight = screenHeight;
+		SpriteRecords records = previous;
+		previous = current;
+		current = records;
+		current.count = 0;
+		dirtyCount = 0;
+	}
+
+	/**
+	 * Records a Sprite drawn in the current frame.
+	 */
+	public void record(Sprite sprite, Image image, int x, int y) {
+		current.add(sprite, image, x, y);
+	}
+
+	/**
+	 * Marks the bounds of every Sprite that changed since the previous frame
+	 * dirty, using the specified scrolling offset for both frames.
+	 */
+	public void addChangedSprites(int offsetX, int offsetY) {
+		int count = Math.max(previous.count, current.count);
+		for (int i = 0; i < count; i++) {
+			if (i < previous.count && i < current.count && previous.equals(i, current)) {
+				continue;
+			}
+			// the Sprite at this index changed (or the list did)
+			if (i < previous.count) {
+				Image image = previous.images[i];
+				add(previous.xs[i] + offsetX, previous.ys[i] + offsetY, image.getWidth(null), image.getHeight(null));
+			}
+			if (i < current.count) {
+				Image image = current.images[i];
+				add(current.xs[i] + offsetX, current.ys[i] + offsetY, image.getWidth(null), image.getHeight(null));
+			}
+		}
+	}
+
+	/**
+	 * Marks the whole screen dirty.
+	 */
+	public void addScreen() {
+		dirtyCount = 1;
+		dirty[0].setBounds(0, 0, screenWidth, screenHeight);
+	}
+
+	/**
+	 * Marks a screen region dirty.
+	 */
+	public void add(int x, int y, int width, int height) {
+		// clip to the screen
+		int x2 = Math.min(x + width, screenWidth);
+		int y2 = Math.min(y + height, screenHeight);
+		x = Math.max(x, 0);
+		y = Math.max(y, 0);
+		if (x >= x2 || y >= y2) {
+			return;
+		}
+
+		Rectangle rect;
+		if (dirtyCount == dirty.length) {
+			// too many rectangles, merge them all
+			rect = dirty[0];
+			for (int i = 1; i < dirtyCount; i++) {
+				rect.add(dirty[i]);
+			}
+			dirtyCount = 1;
+			rect.add(x, y);
+			rect.add(x2, y2);
+			return;
+		}
+		rect = dirty[dirtyCount++];
+		rect.setBounds(x, y, x2 - x, y2 - y);
+		merge(dirtyCount - 1);
+	}
+
+	/**
+	 * Merges the rectangle at the specified index with every rectangle it
+	 * overlaps, until no rectangles overlap.
+	 */
+	private void merge(int index) {
+		Rectangle rect = dirty[index];
+		for (int i = 0; i < dirtyCount; i++) {
+			if (i != index && dirty[i].intersects(rect)) {
+				dirty[i].add(rect);
+				// move the last rectangle into the free slot
+				dirtyCount--;
+				dirty[index] = dirty[dirtyCount];
+				dirty[dirtyCount] = rect;
+				merge(i < dirtyCount ? i : index);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of dirty rectangles.
+	 */
+	public int getDirtyCount() {
+		return dirtyCount;
+	}
+
+	/**
+	 * Gets a dirty rectangle, in screen coordinates.
+	 */
+	public Rectangle getDirty(int i) {
+		return dirty[i];
+	}
+
+	/**
+	 * The Sprites drawn in one frame, in drawing order.
+	 */
+	private static class SpriteRecords {
+
+		Sprite[] sprites = new Sprite[64];
+		Image[] images = new Image[64];
+		int[] xs = new int[64];
+		int[] ys = new int[64];
+		int count;
+
+		void add(Sprite sprite, Image image, int x, int y) {
+			if (count == sprites.length) {
+				grow();
+			}
+			sprites[count] = sprite;
+			images[count] = image;
+			xs[count] = x;
+			ys[count] = y;
+			count++;
+		}
+
+		boolean equals(int i, SpriteRecords other) {
+			return sprites[i] == other.sprites[i] && images[i] == other.images[i] && xs[i] == other.xs[i]
+					&& ys[i] == other.ys[i];
+		}
+
+		private void grow() {
+			int length = sprites.length * 2;
+			Sprite[] newSprites = new Sprite[length];
+			Image[] newImages = new Image[length];
+			int[] newXs = new int[length];
+			int[] newYs = new int[length];
+			System.arraycopy(sprites, 0, newSprites, 0, count);
+			System.arraycopy(images, 0, newImages, 0, count);
+			System.arraycopy(xs, 0, newXs, 0, count);
+			System.arraycopy(ys, 0, newYs, 0, count);
+			sprites = newSprites;
+			images = newImages;
+			xs = newXs;
+			ys = newYs;
+		}
+	}
+
+}
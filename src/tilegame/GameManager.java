@@ -7,11 +7,11 @@ import java.awt.Cursor;
 import java.awt.FlowLayout;
 import java.awt.Graphics2D;
 import java.awt.Image;
-import java.awt.Point;
 import java.awt.Transparency;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
+import java.io.File;
 import java.io.IOException;
 import java.util.Iterator;
 
@@ -23,10 +23,15 @@ import javax.swing.JComponent;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 
+import graphics.CollisionMask;
+import graphics.ComponentOverlay;
+import graphics.FixedPoint;
+import graphics.FrameCapture;
 import graphics.NullRepaintManager;
 import graphics.Sprite;
 import input.GameAction;
 import input.InputManager;
+import input.InputSnapshot;
 import sound.EchoFilter;
 import sound.ISoundManager;
 import sound.MidiPlayer;
@@ -45,8 +50,25 @@ public class GameManager extends GameCore implements ActionListener {
 	private static final int DRUM_TRACK = 1;
 
 	private static final float GRAVITY = 0.002f;
-
-	private Point pointCache = new Point();
+	// the gravity in 16.16 fixed-point, for the fixed-point physics
+	private static final int FIXED_GRAVITY = FixedPoint.toFixed(GRAVITY);
+	
+	// the window height that is drawn at scale 1
+	private static final int LOGICAL_HEIGHT = 480;
+	// the scale is picked in steps of 1/SCALE_STEPS
+	private static final int SCALE_STEPS = 4;
+	
+	// physics defaults, in milliseconds
+	private static final long DEFAULT_PHYSICS_STEP = 10;
+	private static final long DEFAULT_MAX_ELAPSED_TIME = 100;
+	private static final int DEFAULT_MAX_SUB_STEPS = 8;
+	private static final int DEFAULT_MAX_FAR_SUB_STEPS = 2;
+
+	private final TileSweep tileSweep = new TileSweep();
+	private final SortAndSweep sortAndSweep = new SortAndSweep();
+	private final MotionIntegrator motionIntegrator = MotionIntegrators.create();
+	private final CreatureBatch nearCreatures = new CreatureBatch();
+	private final CreatureBatch farCreatures = new CreatureBatch();
 	
 	private Sound prizeSound;
 	private Sound boopSound;
@@ -66,6 +88,19 @@ public class GameManager extends GameCore implements ActionListener {
 	private GameAction pause;
 	private GameAction config;
 	private GameAction exit;
+	private GameAction hud;
+	private GameAction record;
+	
+	private boolean dirtyRectangleMode;
+	private boolean fixedPointPhysics;
+	private float scale = 1;
+	private boolean autoScale;
+	private long physicsStep = DEFAULT_PHYSICS_STEP;
+	private long maxElapsedTime = DEFAULT_MAX_ELAPSED_TIME;
+	private int maxSubSteps = DEFAULT_MAX_SUB_STEPS;
+	private int maxFarSubSteps = DEFAULT_MAX_FAR_SUB_STEPS;
+	private PerformanceHud performanceHud;
+	private FrameCapture.Format captureFormat = FrameCapture.Format.PNG;
 	
 	@Override
 	public void init() {
@@ -89,6 +124,8 @@ public class GameManager extends GameCore implements ActionListener {
 		pause = new GameAction("pause", GameAction.DETECT_INITAL_PRESS_ONLY);
 		config = new GameAction("config");
 		exit = new GameAction("exit", GameAction.DETECT_INITAL_PRESS_ONLY);
+		hud = new GameAction("hud", GameAction.DETECT_INITAL_PRESS_ONLY);
+		record = new GameAction("record", GameAction.DETECT_INITAL_PRESS_ONLY);
 
 		inputManager = new InputManager(screen.getFullScreenWindow());
 		//inputManager.setCursor(InputManager.INVISIBLE_CURSOR);
@@ -99,6 +136,12 @@ public class GameManager extends GameCore implements ActionListener {
 		
 		inputManager.mapToKey(pause, KeyEvent.VK_P);
 		inputManager.mapToKey(exit, KeyEvent.VK_ESCAPE);
+		inputManager.mapToKey(hud, KeyEvent.VK_F3);
+		inputManager.mapToKey(record, KeyEvent.VK_F9);
+		// only tapped by its button
+		inputManager.addGameAction(config);
+		
+		performanceHud = new PerformanceHud();
 	}
 	
 	private boolean paused;
@@ -108,6 +151,7 @@ public class GameManager extends GameCore implements ActionListener {
 	private JButton quitButton;
 	private JButton pauseButton;
 	private JPanel playButtonSpace;
+	private ComponentOverlay overlay;
 	
 	private void initRepaintManager() {
 		// make sure Swing components don't paint themselves
@@ -142,6 +186,11 @@ public class GameManager extends GameCore implements ActionListener {
 
 		// explicitly layout components (needed on some systems)
 		frame.validate();
+		
+		// the layered pane contains things like popups (tooltips,
+		// popup menus) and the content pane. it's drawn from an image
+		// that is only painted again when a component changes.
+		overlay = new ComponentOverlay(frame.getLayeredPane());
 	}
 	
 	/**
@@ -204,13 +253,13 @@ public class GameManager extends GameCore implements ActionListener {
 		Object src = e.getSource();
 		if (src == quitButton) {
 			// fire the "exit" gameAction
-			exit.tap();
+			inputManager.tap(exit);
 		} else if (src == configButton) {
 			// doesn't do anything (for now)
-			config.tap();
+			inputManager.tap(config);
 		} else if (src == playButton || src == pauseButton) {
 			// fire the "pause" gameAction
-			pause.tap();
+			inputManager.tap(pause);
 		}
 	}
 	
@@ -243,6 +292,94 @@ public class GameManager extends GameCore implements ActionListener {
 		return isFullScreen;
 	}
 	
+	/**
+	 * Sets the format frames are recorded in when F9 is pressed.
+	 */
+	public void setCaptureFormat(FrameCapture.Format captureFormat) {
+		this.captureFormat = captureFormat;
+	}
+	
+	/**
+	 * Starts or stops recording frames to a new "capture-" directory.
+	 */
+	private void toggleCapture() {
+		if (isCapturing()) {
+			stopCapture();
+		} else {
+			File directory = new File("capture-" + System.currentTimeMillis());
+			startCapture(new FrameCapture(directory, captureFormat));
+		}
+	}
+	
+	/**
+	 * Sets whether the map is drawn in dirty rectangle mode, repainting only
+	 * the regions of the screen that changed. Must be called before run().
+	 */
+	public void setDirtyRectangleMode(boolean dirtyRectangleMode) {
+		this.dirtyRectangleMode = dirtyRectangleMode;
+	}
+	
+	/**
+	 * Sets whether creatures are moved with 16.16 fixed-point math instead of
+	 * floats. Fixed-point physics only uses int math, so a game played with
+	 * the same input gives the same result on every platform.
+	 */
+	public void setFixedPointPhysics(boolean fixedPointPhysics) {
+		this.fixedPointPhysics = fixedPointPhysics;
+		if (map != null) {
+			setMap(map);
+		}
+	}
+	
+	/**
+	 * Sets the scale the map is drawn at, and stops picking it from the
+	 * window height. The default is 1.
+	 */
+	public void setScale(float scale) {
+		if (scale <= 0) {
+			throw new IllegalArgumentException("The scale must be positive: " + scale);
+		}
+		this.scale = scale;
+		autoScale = false;
+	}
+	
+	/**
+	 * Sets whether the scale is picked from the window height, so a bigger
+	 * window shows the same part of the map with bigger tiles. Off by
+	 * default.
+	 */
+	public void setAutoScale(boolean autoScale) {
+		this.autoScale = autoScale;
+	}
+	
+	/**
+	 * Sets the physics step, in milliseconds. Each update is split into
+	 * sub-steps of about this length, so fast creatures move and fall the
+	 * same way whatever the frame rate.
+	 */
+	public void setPhysicsStep(long physicsStep) {
+		this.physicsStep = Math.max(physicsStep, 1);
+	}
+	
+	/**
+	 * Sets the longest time, in milliseconds, an update moves the game by.
+	 * Longer updates, like after a stall, are cut to this, so the game slows
+	 * down for a moment instead of jumping ahead.
+	 */
+	public void setMaxElapsedTime(long maxElapsedTime) {
+		this.maxElapsedTime = Math.max(maxElapsedTime, 1);
+	}
+	
+	/**
+	 * Sets the most sub-steps a creature takes per update, and the most a
+	 * creature more than a screen away from the player takes. When an update
+	 * needs more sub-steps, they're made longer instead.
+	 */
+	public void setMaxSubSteps(int maxSubSteps, int maxFarSubSteps) {
+		this.maxSubSteps = Math.max(maxSubSteps, 1);
+		this.maxFarSubSteps = Math.max(maxFarSubSteps, 1);
+	}
+	
 	private void initResources() {
 		// start resource manager
 		resourceManager = new ResourceManager(screen.getFullScreenWindow().getGraphicsConfiguration());
@@ -251,9 +388,23 @@ public class GameManager extends GameCore implements ActionListener {
 		
 		// load renderer with background
 		renderer = resourceManager.loadRenderer();
+		renderer.setDirtyRectangleMode(dirtyRectangleMode);
 
 		// load first map
-		map = resourceManager.loadNextMap();
+		setMap(resourceManager.loadNextMap());
+	}
+	
+	/**
+	 * Sets the current map, and puts its sprites in fixed-point mode if
+	 * creatures are moved with fixed-point physics.
+	 */
+	private void setMap(TileMap map) {
+		this.map = map;
+		map.getPlayer().setFixedPoint(fixedPointPhysics);
+		Iterator<Sprite> i = map.getSprites();
+		while (i.hasNext()) {
+			i.next().setFixedPoint(fixedPointPhysics);
+		}
 	}
 	
 	/**
@@ -312,12 +463,36 @@ public class GameManager extends GameCore implements ActionListener {
 	
 	@Override
 	public void draw(Graphics2D g) {
+		updateScale();
 		renderer.draw(g, map, screen);
+		overlay.draw(g);
 		
-		// the layered pane contains things like popups (tooltips,
-		// popup menus) and the content pane.
-		JFrame frame = screen.getFullScreenWindow();
-		frame.getLayeredPane().paintComponents(g);
+		int activeSounds = -1;
+		if (performanceHud.isVisible() && soundManager instanceof SoundManagerExecutor) {
+			activeSounds = ((SoundManagerExecutor) soundManager).getActiveCount();
+		}
+		performanceHud.draw(g, screen.getWidth(), getUpdateTime(), getDrawTime(), map, renderer, activeSounds);
+	}
+
+	/**
+	 * Switches to the scale set with setScale(), or picked from the window
+	 * height with auto scale. The images are only scaled the first time a
+	 * scale is used.
+	 */
+	private void updateScale() {
+		float scale = autoScale ? getScale(screen.getHeight()) : this.scale;
+		if (scale != renderer.getScale()) {
+			resourceManager.setScale(scale);
+		}
+	}
+	
+	/**
+	 * Gets the scale for a window height, rounded down to a step of the
+	 * scale, and never less than 1.
+	 */
+	static float getScale(int screenHeight) {
+		int steps = screenHeight * SCALE_STEPS / LOGICAL_HEIGHT;
+		return Math.max(steps, SCALE_STEPS) / (float) SCALE_STEPS;
 	}
 
 	/**
@@ -338,11 +513,16 @@ public class GameManager extends GameCore implements ActionListener {
 			return;
 		}
 
-		checkSystemInput();
+		// take the input of this tick
+		InputSnapshot input = inputManager.poll();
+		checkSystemInput(input);
 		if (!isPaused()) {
-			checkGameInput();
+			checkGameInput(input);
+			elapsedTime = Math.min(elapsedTime, maxElapsedTime);
 			updatePlayer(elapsedTime);
+			resourceManager.updateSharedAnimations(elapsedTime);
 			updateOtherSprites(elapsedTime);
+			checkCreatureCollisions();
 		}
 	}
 	
@@ -354,23 +534,29 @@ public class GameManager extends GameCore implements ActionListener {
 	 * player is dead! start map over
 	 */
 	private void reloadMap() {
-		map = resourceManager.reloadMap();
+		setMap(resourceManager.reloadMap());
 	}
 	
 	/**
 	 * get keyboard/mouse input
-	 * @param elapsedTime
+	 * @param input the input of this tick
 	 */
-	private void checkSystemInput() {
-		if (pause.isPressed()) {
+	private void checkSystemInput(InputSnapshot input) {
+		if (input.isPressed(pause)) {
 			setPaused(!isPaused());
 		}
-		if(config.isPressed()){
+		if(input.isPressed(config)){
 			setFullScreen(!isFullScreen());
 		}
-		if (exit.isPressed()) {
+		if (input.isPressed(exit)) {
 			stop();
 		}
+		if (input.isPressed(hud)) {
+			performanceHud.setVisible(!performanceHud.isVisible());
+		}
+		if (input.isPressed(record)) {
+			toggleCapture();
+		}
 	}
 	
 	private void setFullScreen(boolean f) {
@@ -380,17 +566,17 @@ public class GameManager extends GameCore implements ActionListener {
 		}
 	}
 	
-	private void checkGameInput(){
+	private void checkGameInput(InputSnapshot input){
 		Player player = (Player) map.getPlayer();
 		if (player.isAlive()) {
 			float velocityX = 0;
-			if (moveLeft.isPressed()) {
+			if (input.isPressed(moveLeft)) {
 				velocityX -= player.getMaxSpeed();
 			}
-			if (moveRight.isPressed()) {
+			if (input.isPressed(moveRight)) {
 				velocityX += player.getMaxSpeed();
 			}
-			if (jump.isPressed()) {
+			if (input.isPressed(jump)) {
 				if(player.jump(false)){
 					soundManager.play(jumpSound);
 				}
@@ -401,11 +587,17 @@ public class GameManager extends GameCore implements ActionListener {
 	
 	private void updatePlayer(long elapsedTime) {
 		Creature player = (Creature) map.getPlayer();
-		updateCreature(player, elapsedTime);
+		updateCreature(player, elapsedTime, maxSubSteps);
 		player.update(elapsedTime);
 	}
 	
 	private void updateOtherSprites(long elapsedTime) {
+		// batch the creatures. creatures more than a screen away from the
+		// player take fewer sub-steps
+		float playerX = map.getPlayer().getX();
+		float farDistance = screen.getWidth() / renderer.getScale();
+		nearCreatures.clear();
+		farCreatures.clear();
 		Iterator<Sprite> i = map.getSprites();
 		while (i.hasNext()) {
 			Sprite sprite = i.next();
@@ -414,11 +606,42 @@ public class GameManager extends GameCore implements ActionListener {
 				if (creature.isDead()) {
 					i.remove();
 				} else {
-					updateCreature(creature, elapsedTime);
+					boolean far = Math.abs(creature.getX() - playerX) > farDistance;
+					(far ? farCreatures : nearCreatures).add(creature, creature.isFlying() ? 0 : GRAVITY);
+				}
+			}
+		}
+		updateCreatures(nearCreatures, elapsedTime, maxSubSteps);
+		updateCreatures(farCreatures, elapsedTime, maxFarSubSteps);
+		nearCreatures.clear();
+		farCreatures.clear();
+
+		// normal update
+		i = map.getSprites();
+		while (i.hasNext()) {
+			i.next().update(elapsedTime);
+		}
+	}
+	
+	/**
+	 * Makes creatures that run into each other turn around. The pairs of
+	 * creatures that may collide are found by the sort-and-sweep broadphase.
+	 */
+	private void checkCreatureCollisions() {
+		sortAndSweep.update(map);
+		for (int i = 0; i < sortAndSweep.getPairCount(); i++) {
+			Creature first = sortAndSweep.getFirst(i);
+			Creature second = sortAndSweep.getSecond(i);
+			if (isCollision(first, second)) {
+				// only turn around the creatures moving toward the other one,
+				// so overlapping creatures don't keep turning
+				if (first.getVelocityX() > 0) {
+					first.collideHorizontal();
+				}
+				if (second.getVelocityX() < 0) {
+					second.collideHorizontal();
 				}
 			}
-			// normal update
-			sprite.update(elapsedTime);
 		}
 	}
 	
@@ -427,6 +650,7 @@ public class GameManager extends GameCore implements ActionListener {
 	 */
 	@Override
 	public void stop() {
+		stopCapture();
 		super.stop();
 		midiPlayer.close();
 		soundManager.close();
@@ -434,34 +658,159 @@ public class GameManager extends GameCore implements ActionListener {
 
 	/**
 	 * Updates the creature, applying gravity for creatures that aren't flying, and checks collisions.
+	 * The elapsed time is split into sub-steps of about the physics step, at most maxSubSteps of them.
+	 */
+	private void updateCreature(Creature creature, long elapsedTime, int maxSubSteps) {
+		int subSteps = getSubSteps(elapsedTime, maxSubSteps);
+		TileMap currentMap = map;
+		long remainingTime = elapsedTime;
+		for (int i = subSteps; i > 0; i--) {
+			// spread the remainder over the sub-steps
+			long stepTime = remainingTime / i;
+			remainingTime -= stepTime;
+			applyGravity(creature, stepTime);
+			detectCollisionHorizontally(creature, stepTime);
+			detectCollisionVertically(creature, stepTime);
+			if (map != currentMap) {
+				// the player reached the goal, and the next map is loaded
+				break;
+			}
+		}
+	}
+	
+	/**
+	 * Updates a batch of creatures like updateCreature(), with the gravity
+	 * and motion of each sub-step worked out for the whole batch at once by
+	 * the MotionIntegrator. The creatures are moved in the batch, and only
+	 * get their new positions and velocities at the end. Not for the player,
+	 * whose collisions with other sprites can change its motion in the
+	 * middle of a sub-step.
+	 */
+	private void updateCreatures(CreatureBatch batch, long elapsedTime, int maxSubSteps) {
+		if (fixedPointPhysics) {
+			// the batches are floats, so move each creature on its own
+			for (int i = 0; i < batch.size(); i++) {
+				updateCreature(batch.getCreature(i), elapsedTime, maxSubSteps);
+			}
+			return;
+		}
+		if (batch.size() == 0) {
+			return;
+		}
+		int subSteps = getSubSteps(elapsedTime, maxSubSteps);
+		long remainingTime = elapsedTime;
+		for (int i = subSteps; i > 0; i--) {
+			long stepTime = remainingTime / i;
+			remainingTime -= stepTime;
+			batch.integrate(motionIntegrator, stepTime);
+			for (int j = 0; j < batch.size(); j++) {
+				moveHorizontally(batch, j);
+				moveVertically(batch, j);
+			}
+		}
+		batch.store();
+	}
+	
+	/**
+	 * Moves a creature of a batch to its new x, or up to the first tile in
+	 * the way.
+	 */
+	private void moveHorizontally(CreatureBatch batch, int i) {
+		float x = batch.getX(i);
+		float newX = batch.getNewX(i);
+		int width = batch.getWidth(i);
+		if (!tileSweep.sweep(map, x, batch.getY(i), width, batch.getHeight(i), newX - x, 0)) {
+			batch.setX(i, newX);
+		} else {
+			batch.setX(i, getAlignedX(batch.getVelocityX(i) > 0, width));
+			batch.collideHorizontal(i);
+		}
+	}
+	
+	/**
+	 * Moves a creature of a batch to its new y, or up to the first tile in
+	 * the way.
+	 */
+	private void moveVertically(CreatureBatch batch, int i) {
+		float y = batch.getY(i);
+		float newY = batch.getNewY(i);
+		int height = batch.getHeight(i);
+		if (!tileSweep.sweep(map, batch.getX(i), y, batch.getWidth(i), height, 0, newY - y)) {
+			batch.setY(i, newY);
+		} else {
+			batch.setY(i, getAlignedY(batch.getVelocityY(i) > 0, height));
+			batch.collideVertical(i);
+		}
+	}
+	
+	/**
+	 * Gets the x, in pixels, that lines up a sprite moving right or left with
+	 * the side of the tile hit by the last sweep.
+	 */
+	private int getAlignedX(boolean right, int width) {
+		if (right) {
+			return TileMapRenderer.tilesToPixels(tileSweep.getTile().x) - width;
+		}
+		return TileMapRenderer.tilesToPixels(tileSweep.getTile().x + 1);
+	}
+	
+	/**
+	 * Gets the y, in pixels, that lines up a sprite moving down or up with
+	 * the side of the tile hit by the last sweep.
 	 */
-	private void updateCreature(Creature creature, long elapsedTime) {
-		applyGravity(creature, elapsedTime);
-		detectCollisionHorizontally(creature, elapsedTime);
-		detectCollisionVertically(creature, elapsedTime);
+	private int getAlignedY(boolean down, int height) {
+		if (down) {
+			return TileMapRenderer.tilesToPixels(tileSweep.getTile().y) - height;
+		}
+		return TileMapRenderer.tilesToPixels(tileSweep.getTile().y + 1);
+	}
+	
+	private int getSubSteps(long elapsedTime, int maxSubSteps) {
+		int subSteps = (int) Math.min((elapsedTime + physicsStep - 1) / physicsStep, maxSubSteps);
+		return Math.max(subSteps, 1);
 	}
 	
 	private void applyGravity(Creature creature, long elapsedTime) {
-		if (!creature.isFlying()) {
+		if (creature.isFlying()) {
+			return;
+		}
+		if (fixedPointPhysics) {
+			creature.setFixedVelocityY(creature.getFixedVelocityY() + FIXED_GRAVITY * (int) elapsedTime);
+		} else {
 			creature.setVelocityY(creature.getVelocityY() + GRAVITY * elapsedTime);
 		}
 	}
 	
-	private void detectCollisionHorizontally(Creature creature, long elapsedTime) {
-		// change x
-		float dx = creature.getVelocityX();
-		float oldX = creature.getX();
-		float newX = oldX + dx * elapsedTime;
-		Point tile = getTileCollision(creature, newX, creature.getY());
-		if (tile == null) {
-			creature.setX(newX);
+	/**
+	 * Moves the creature by its velocity over stepTime, or up to the first
+	 * tile in the way. With fixed-point physics, the move only uses int math.
+	 */
+	private void detectCollisionHorizontally(Creature creature, long stepTime) {
+		boolean hit;
+		boolean right;
+		if (fixedPointPhysics) {
+			int dx = creature.getFixedVelocityX();
+			int oldX = creature.getFixedX();
+			int newX = oldX + dx * (int) stepTime;
+			hit = tileSweep.sweepFixedX(map, oldX, creature.getFixedY(),
+				creature.getWidth(), creature.getHeight(), newX - oldX);
+			if (!hit) {
+				creature.setFixedX(newX);
+			}
+			right = (dx > 0);
 		} else {
-			// line up with the tile boundary
-			if (dx > 0) {
-				creature.setX(TileMapRenderer.tilesToPixels(tile.x) - creature.getWidth());
-			} else if (dx < 0) {
-				creature.setX(TileMapRenderer.tilesToPixels(tile.x + 1));
+			float dx = creature.getVelocityX();
+			float oldX = creature.getX();
+			float newX = oldX + dx * stepTime;
+			hit = sweep(creature, newX - oldX, 0);
+			if (!hit) {
+				creature.setX(newX);
 			}
+			right = (dx > 0);
+		}
+		if (hit) {
+			// line up with the tile boundary
+			setPixelX(creature, getAlignedX(right, creature.getWidth()));
 			creature.collideHorizontal();
 		}
 		if (creature instanceof Player) {
@@ -469,58 +818,78 @@ public class GameManager extends GameCore implements ActionListener {
 		}
 	}
 	
-	private void detectCollisionVertically(Creature creature, long elapsedTime) {
-		// change y
-		float dy = creature.getVelocityY();
-		float oldY = creature.getY();
-		float newY = oldY + dy * elapsedTime;
-		Point tile = getTileCollision(creature, creature.getX(), newY);
-		if (tile == null) {
-			creature.setY(newY);
+	/**
+	 * Moves the creature by its velocity over stepTime, or up to the first
+	 * tile in the way. With fixed-point physics, the move only uses int math.
+	 */
+	private void detectCollisionVertically(Creature creature, long stepTime) {
+		boolean hit;
+		boolean down;
+		int oldFixedY = 0;
+		float oldY = 0;
+		if (fixedPointPhysics) {
+			int dy = creature.getFixedVelocityY();
+			oldFixedY = creature.getFixedY();
+			int newY = oldFixedY + dy * (int) stepTime;
+			hit = tileSweep.sweepFixedY(map, creature.getFixedX(), oldFixedY,
+				creature.getWidth(), creature.getHeight(), newY - oldFixedY);
+			if (!hit) {
+				creature.setFixedY(newY);
+			}
+			down = (dy > 0);
 		} else {
-			// line up with the tile boundary
-			if (dy > 0) {
-				creature.setY(TileMapRenderer.tilesToPixels(tile.y) - creature.getHeight());
-			} else if (dy < 0) {
-				creature.setY(TileMapRenderer.tilesToPixels(tile.y + 1));
+			float dy = creature.getVelocityY();
+			oldY = creature.getY();
+			float newY = oldY + dy * stepTime;
+			hit = sweep(creature, 0, newY - oldY);
+			if (!hit) {
+				creature.setY(newY);
 			}
+			down = (dy > 0);
+		}
+		if (hit) {
+			// line up with the tile boundary
+			setPixelY(creature, getAlignedY(down, creature.getHeight()));
 			creature.collideVertical();
 		}
 		if (creature instanceof Player) {
-			boolean canKill = (oldY < creature.getY());
+			boolean canKill = fixedPointPhysics ? (oldFixedY < creature.getFixedY()) : (oldY < creature.getY());
 			checkPlayerCollision((Player) creature, canKill);
 		}
 	}
 	
 	/**
-	 * Gets the tile that a Sprites collides with. Only the Sprite's X or Y
-	 * should be changed, not both. Returns null if no collision is detected.
+	 * Sets the x of a sprite to a whole pixel, in fixed-point with
+	 * fixed-point physics.
 	 */
-	private Point getTileCollision(Sprite sprite, float newX, float newY) {
-		float fromX = Math.min(sprite.getX(), newX);
-		float fromY = Math.min(sprite.getY(), newY);
-		float toX = Math.max(sprite.getX(), newX);
-		float toY = Math.max(sprite.getY(), newY);
-
-		// get the tile locations
-		int fromTileX = TileMapRenderer.pixelsToTiles(fromX);
-		int fromTileY = TileMapRenderer.pixelsToTiles(fromY);
-		int toTileX = TileMapRenderer.pixelsToTiles(toX + sprite.getWidth() - 1);
-		int toTileY = TileMapRenderer.pixelsToTiles(toY + sprite.getHeight() - 1);
-
-		// check each tile for a collision
-		for (int x = fromTileX; x <= toTileX; x++) {
-			for (int y = fromTileY; y <= toTileY; y++) {
-				if (x < 0 || x >= map.getWidth() || map.getTile(x, y) != null) {
-					// collision found, return the tile
-					pointCache.setLocation(x, y);
-					return pointCache;
-				}
-			}
+	private void setPixelX(Sprite sprite, int x) {
+		if (fixedPointPhysics) {
+			sprite.setFixedX(FixedPoint.toFixed(x));
+		} else {
+			sprite.setX(x);
 		}
-
-		// no collision found
-		return null;
+	}
+	
+	/**
+	 * Sets the y of a sprite to a whole pixel, in fixed-point with
+	 * fixed-point physics.
+	 */
+	private void setPixelY(Sprite sprite, int y) {
+		if (fixedPointPhysics) {
+			sprite.setFixedY(FixedPoint.toFixed(y));
+		} else {
+			sprite.setY(y);
+		}
+	}
+	
+	/**
+	 * Sweeps a Sprite by (dx, dy) pixels through the map, and checks if it
+	 * hits a tile on the way. The tile it hits first is kept in tileSweep.
+	 * Only the solid layer of the map is checked, decoration and foreground
+	 * tiles never collide.
+	 */
+	private boolean sweep(Sprite sprite, float dx, float dy) {
+		return tileSweep.sweep(map, sprite.getX(), sprite.getY(), sprite.getWidth(), sprite.getHeight(), dx, dy);
 	}
 
 	/**
@@ -542,7 +911,11 @@ public class GameManager extends GameCore implements ActionListener {
 				// kill the badguy and make player bounce
 				soundManager.play(boopSound);
 				badGuy.setState(Creature.STATE_DYING);
-				player.setY(badGuy.getY() - player.getHeight());
+				if (fixedPointPhysics) {
+					player.setFixedY(badGuy.getFixedY() - FixedPoint.toFixed(player.getHeight()));
+				} else {
+					player.setY(badGuy.getY() - player.getHeight());
+				}
 				player.jump(true);
 			} else {
 				// player dies!
@@ -573,7 +946,8 @@ public class GameManager extends GameCore implements ActionListener {
 	/**
 	 * Checks if two Sprites collide with one another. Returns false if the two
 	 * Sprites are the same. Returns false if one of the Sprites is a Creature
-	 * that is not alive.
+	 * that is not alive. Sprites collide if their hitboxes intersect and
+	 * their current images have visible pixels in the same place.
 	 */
 	private boolean isCollision(Sprite s1, Sprite s2) {
 		// if the Sprites are the same, return false
@@ -589,15 +963,41 @@ public class GameManager extends GameCore implements ActionListener {
 			return false;
 		}
 
-		// get the pixel location of the Sprites
-		int s1x = Math.round(s1.getX());
-		int s1y = Math.round(s1.getY());
-		int s2x = Math.round(s2.getX());
-		int s2y = Math.round(s2.getY());
+		// get the pixel location of the Sprites' hitboxes
+		int s1x = roundX(s1) + s1.getHitboxX();
+		int s1y = roundY(s1) + s1.getHitboxY();
+		int s2x = roundX(s2) + s2.getHitboxX();
+		int s2y = roundY(s2) + s2.getHitboxY();
+
+		// check if the two sprites' hitboxes intersect
+		if (!(s1x < s2x + s2.getHitboxWidth() && s2x < s1x + s1.getHitboxWidth() 
+				&& s1y < s2y + s2.getHitboxHeight() && s2y < s1y + s1.getHitboxHeight())) {
+			return false;
+		}
 
-		// check if the two sprites' boundaries intersect
-		return s1x < s2x + s2.getWidth() && s2x < s1x + s1.getWidth() 
-				&& s1y < s2y + s2.getHeight() && s2y < s1y + s1.getHeight();
+		// check the visible pixels where the images overlap
+		CollisionMask mask1 = resourceManager.getCollisionMask(s1.getImage());
+		CollisionMask mask2 = resourceManager.getCollisionMask(s2.getImage());
+		if (mask1 == null || mask2 == null) {
+			return true;
+		}
+		return mask1.collides(roundX(s1), roundY(s1), mask2, roundX(s2), roundY(s2));
+	}
+	
+	/**
+	 * Rounds the x position of a Sprite to a pixel, from the fixed-point
+	 * position with fixed-point physics.
+	 */
+	private int roundX(Sprite sprite) {
+		return fixedPointPhysics ? FixedPoint.round(sprite.getFixedX()) : Math.round(sprite.getX());
+	}
+	
+	/**
+	 * Rounds the y position of a Sprite to a pixel, from the fixed-point
+	 * position with fixed-point physics.
+	 */
+	private int roundY(Sprite sprite) {
+		return fixedPointPhysics ? FixedPoint.round(sprite.getFixedY()) : Math.round(sprite.getY());
 	}
 
 	/**
@@ -617,7 +1017,7 @@ public class GameManager extends GameCore implements ActionListener {
 		} else if (powerUp instanceof PowerUp.Goal) {
 			// advance to next map
 			soundManager.play(prizeSound, new EchoFilter(2000, .7f), false);
-			map = resourceManager.loadNextMap();
+			setMap(resourceManager.loadNextMap());
 		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package tilegame;
+
+/**
+ * A MotionIntegrator takes a physics step for a batch of bodies kept in
+ * arrays, one lane per body, so the same arithmetic runs over all the lanes
+ * in one loop.
+ */
+public interface MotionIntegrator {
+
+	/**
+	 * Takes a step of the specified time, in milliseconds, for the first
+	 * count bodies: adds gravity[i] * time to vy[i], and sets (newX[i],
+	 * newY[i]) to where the body moves with its velocity. The positions
+	 * themselves are left alone, so collisions can be checked before moving.
+	 */
+	void integrate(int count, float time, float[] x, float[] y, float[] vx, float[] vy, float[] gravity,
+			float[] newX, float[] newY);
+
+}
@@ -0,0 +1,33 @@
+package tilegame;
+
+/**
+ * The MotionIntegrators class picks the fastest MotionIntegrator the runtime
+ * supports. The VectorMotionIntegrator, which uses the incubating Vector API
+ * of Java 16 and later, is only built by the "vector" Maven profile (active
+ * on JDK 16 and later), and only works when the jdk.incubator.vector module
+ * is added with "--add-modules jdk.incubator.vector". Otherwise, the
+ * ScalarMotionIntegrator is used.
+ */
+public class MotionIntegrators {
+
+	private static final String VECTOR_INTEGRATOR = "tilegame.VectorMotionIntegrator";
+
+	private MotionIntegrators() {
+	}
+
+	/**
+	 * Creates the VectorMotionIntegrator if it's available, or a
+	 * ScalarMotionIntegrator.
+	 */
+	public static MotionIntegrator create() {
+		try {
+			return (MotionIntegrator) Class.forName(VECTOR_INTEGRATOR).getDeclaredConstructor().newInstance();
+		} catch (Exception ex) {
+			// not built, or not created
+		} catch (LinkageError ex) {
+			// built for a newer Java, or the module isn't added
+		}
+		return new ScalarMotionIntegrator();
+	}
+
+}
@@ -0,0 +1,136 @@
+package tilegame;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Transparency;
+
+import graphics.CompatibleImages;
+
+/**
+ * The ParallaxLayer class is one layer of a scrolling background. The layer
+ * image is sliced once into vertical strips of STRIP_WIDTH pixels, converted
+ * to images compatible with the display, and only the strips on screen are
+ * drawn. A wide background then costs no more to draw than one that fits the
+ * screen.
+ * <p>
+ * A layer scrolls in proportion to the map, so both of its edges line up
+ * with the map's edges: a layer narrower than the map appears farther away.
+ * Positions are in logical pixels; a layer drawn at another scale is sliced
+ * from a scaled copy of its image.
+ */
+public class ParallaxLayer {
+
+	public static final int STRIP_WIDTH = 256;
+
+	private final Image image;
+	private final Image scaledImage;
+	private final float scale;
+	private final int width;
+	private final int height;
+	private final int transparency;
+	private Image[] strips;
+
+	/**
+	 * Creates a new ParallaxLayer of the specified image.
+	 */
+	public ParallaxLayer(Image image) {
+		this(image, image, 1);
+	}
+
+	/**
+	 * Creates a new ParallaxLayer of the specified image, drawn at the
+	 * specified scale from a scaled copy of the image.
+	 */
+	public ParallaxLayer(Image image, Image scaledImage, float scale) {
+		this.image = image;
+		this.scaledImage = scaledImage;
+		this.scale = scale;
+		this.width = image.getWidth(null);
+		this.height = image.getHeight(null);
+		this.transparency = CompatibleImages.getTransparency(image);
+	}
+
+	/**
+	 * Gets the image of this layer.
+	 */
+	public Image getImage() {
+		return image;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Checks if this layer has no transparent pixels.
+	 */
+	public boolean isOpaque() {
+		return transparency == Transparency.OPAQUE;
+	}
+
+	/**
+	 * Gets the x position of a layer, so it scrolls in proportion to the map.
+	 * If the map is as wide as the screen, nothing scrolls.
+	 */
+	public static int getX(int layerWidth, int mapWidth, int screenWidth, int offsetX) {
+		if (mapWidth == screenWidth) {
+			return 0;
+		}
+		// 该backgroundX公式 = offsetX * 背景 / 地图，相当于做了个比例映射
+		return (int) ((long) offsetX * (screenWidth - layerWidth) / (screenWidth - mapWidth));
+	}
+
+	/**
+	 * Gets the y position of a layer, which is aligned with the bottom of the
+	 * screen.
+	 */
+	public static int getY(int layerHeight, int screenHeight) {
+		return screenHeight - layerHeight;
+	}
+
+	/**
+	 * Draws the strips of this layer that are on screen. The sizes and the
+	 * offset are in logical pixels.
+	 */
+	public void draw(Graphics2D g, int mapWidth, int screenWidth, int screenHeight, int offsetX) {
+		if (strips == null) {
+			slice(g.getDeviceConfiguration());
+		}
+		int x = Math.round(getX(width, mapWidth, screenWidth, offsetX) * scale);
+		int y = Math.round(getY(height, screenHeight) * scale);
+		int firstStrip = Math.max(0, -x / STRIP_WIDTH);
+		int lastStrip = Math.min(strips.length - 1, (Math.round(screenWidth * scale) - 1 - x) / STRIP_WIDTH);
+		for (int i = firstStrip; i <= lastStrip; i++) {
+			g.drawImage(strips[i], x + i * STRIP_WIDTH, y, null);
+		}
+	}
+
+	/**
+	 * Slices the image into compatible strips.
+	 */
+	private void slice(GraphicsConfiguration gc) {
+		int scaledWidth = scaledImage.getWidth(null);
+		int scaledHeight = scaledImage.getHeight(null);
+		// a scaled copy of a transparent image has translucent edges
+		int stripTransparency = scale != 1 && transparency == Transparency.BITMASK ? Transparency.TRANSLUCENT
+				: transparency;
+		strips = new Image[(scaledWidth + STRIP_WIDTH - 1) / STRIP_WIDTH];
+		for (int i = 0; i < strips.length; i++) {
+			int stripX = i * STRIP_WIDTH;
+			int stripWidth = Math.min(STRIP_WIDTH, scaledWidth - stripX);
+			Image strip = gc.createCompatibleImage(stripWidth, scaledHeight, stripTransparency);
+			Graphics2D g = (Graphics2D) strip.getGraphics();
+			g.setComposite(AlphaComposite.Src);
+			g.drawImage(scaledImage, 0, 0, stripWidth, scaledHeight, stripX, 0, stripX + stripWidth, scaledHeight, null);
+			g.dispose();
+			strips[i] = strip;
+		}
+	}
+
+}
@@ -0,0 +1,210 @@
+package tilegame;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import graphics.GlyphCache;
+
+/**
+ * The PerformanceHud class draws live diagnostics over the game: frames per
+ * second, the update and draw times, the visible and total Sprites, the tiles
+ * drawn, the sounds playing, the heap usage and the garbage collections.
+ * <p>
+ * Drawing the HUD allocates nothing, so turning it on doesn't change what it
+ * measures: the numbers are formatted into a reused char array, the text is
+ * drawn from a GlyphCache, and the garbage collector beans are looked up once.
+ * The translucent background is copied from an image too, as filling with a
+ * translucent color allocates in the software pipeline.
+ */
+public class PerformanceHud {
+
+	private static final int MARGIN = 8;
+	private static final int MAX_LINE_LENGTH = 80;
+	private static final long ONE_SECOND = 1000000000L;
+	private static final long MEGABYTE = 1024 * 1024;
+
+	private final GlyphCache glyphs;
+	private final Color backgroundColor;
+	private final GarbageCollectorMXBean[] collectors;
+	private final Runtime runtime;
+	private Image background;
+
+	private boolean visible;
+
+	// the line being formatted
+	private final char[] line = new char[MAX_LINE_LENGTH];
+	private int length;
+
+	// frames counted to find the frame rate
+	private long frameCountStartTime;
+	private int frameCount;
+	private int framesPerSecond;
+
+	/**
+	 * Creates a new, hidden PerformanceHud.
+	 */
+	public PerformanceHud() {
+		glyphs = new GlyphCache(new Font("Monospaced", Font.PLAIN, 12), Color.white);
+		backgroundColor = new Color(0, 0, 0, 160);
+		List<GarbageCollectorMXBean> beans = ManagementFactory.getGarbageCollectorMXBeans();
+		collectors = beans.toArray(new GarbageCollectorMXBean[beans.size()]);
+		runtime = Runtime.getRuntime();
+	}
+
+	public boolean isVisible() {
+		return visible;
+	}
+
+	public void setVisible(boolean visible) {
+		this.visible = visible;
+	}
+
+	/**
+	 * Draws the HUD in the top-right corner of the screen, if it's visible.
+	 * The times are in nanoseconds. A negative number of active sounds means
+	 * the number is unknown.
+	 */
+	public void draw(Graphics2D g, int screenWidth, long updateTime, long drawTime, TileMap map,
+			TileMapRenderer renderer, int activeSounds) {
+
+		countFrame();
+		if (!visible) {
+			return;
+		}
+
+		int x = screenWidth - MARGIN;
+		int y = MARGIN;
+		clear();
+		append("fps ").append(framesPerSecond);
+		append("  update ").appendMillis(updateTime);
+		append("  draw ").appendMillis(drawTime);
+		y = drawLine(g, x, y);
+
+		clear();
+		append("sprites ").append(renderer.getSpritesDrawn()).append('/').append(map.getSpriteCount() + 1);
+		append("  tiles ").append(renderer.getTilesDrawn());
+		y = drawLine(g, x, y);
+
+		clear();
+		append("sounds ");
+		if (activeSounds >= 0) {
+			append(activeSounds);
+		} else {
+			append('-');
+		}
+		y = drawLine(g, x, y);
+
+		clear();
+		long usedMemory = runtime.totalMemory() - runtime.freeMemory();
+		append("heap ").append(usedMemory / MEGABYTE).append('/').append(runtime.maxMemory() / MEGABYTE);
+		append(" MB");
+		y = drawLine(g, x, y);
+
+		clear();
+		long collections = 0;
+		long collectionTime = 0;
+		for (int i = 0; i < collectors.length; i++) {
+			collections += Math.max(collectors[i].getCollectionCount(), 0);
+			collectionTime += Math.max(collectors[i].getCollectionTime(), 0);
+		}
+		append("gc ").append(collections).append(" (").append(collectionTime).append(" ms)");
+		drawLine(g, x, y);
+	}
+
+	/**
+	 * Counts a frame, and updates the frame rate once a second.
+	 */
+	private void countFrame() {
+		long time = System.nanoTime();
+		frameCount++;
+		if (time - frameCountStartTime >= ONE_SECOND) {
+			framesPerSecond = (int) (frameCount * ONE_SECOND / (time - frameCountStartTime));
+			frameCount = 0;
+			frameCountStartTime = time;
+		}
+	}
+
+	/**
+	 * Draws the formatted line over a translucent background, aligned to the
+	 * right of x. Returns the y position of the next line.
+	 */
+	private int drawLine(Graphics2D g, int x, int y) {
+		int width = glyphs.getWidth(g, line, 0, length);
+		int height = glyphs.getHeight();
+		int backgroundWidth = width + MARGIN;
+		if (background == null || background.getWidth(null) < backgroundWidth) {
+			createBackground(g, backgroundWidth * 2, height);
+		}
+		int backgroundX = x - width - MARGIN / 2;
+		g.drawImage(background, backgroundX, y, backgroundX + backgroundWidth, y + height, 0, 0, backgroundWidth, height,
+				null);
+		glyphs.draw(g, line, 0, length, x - width, y);
+		return y + glyphs.getHeight();
+	}
+
+	private void createBackground(Graphics2D g, int width, int height) {
+		if (background != null) {
+			background.flush();
+		}
+		background = g.getDeviceConfiguration().createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+		Graphics2D backgroundGraphics = (Graphics2D) background.getGraphics();
+		backgroundGraphics.setColor(backgroundColor);
+		backgroundGraphics.fillRect(0, 0, width, height);
+		backgroundGraphics.dispose();
+	}
+
+	private void clear() {
+		length = 0;
+	}
+
+	private PerformanceHud append(char ch) {
+		if (length < line.length) {
+			line[length++] = ch;
+		}
+		return this;
+	}
+
+	private PerformanceHud append(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			append(s.charAt(i));
+		}
+		return this;
+	}
+
+	private PerformanceHud append(long value) {
+		if (value < 0) {
+			append('-');
+			value = -value;
+		}
+		// write the digits backwards, then reverse them
+		int start = length;
+		do {
+			append((char) ('0' + value % 10));
+			value /= 10;
+		} while (value != 0);
+		for (int i = start, j = length - 1; i < j; i++, j--) {
+			char ch = line[i];
+			line[i] = line[j];
+			line[j] = ch;
+		}
+		return this;
+	}
+
+	/**
+	 * Appends a time in nanoseconds as milliseconds, with two decimals.
+	 */
+	private PerformanceHud appendMillis(long nanos) {
+		long hundredths = (nanos + 5000) / 10000;
+		append(hundredths / 100).append('.');
+		append((char) ('0' + hundredths / 10 % 10));
+		append((char) ('0' + hundredths % 10));
+		return append(" ms");
+	}
+
+}
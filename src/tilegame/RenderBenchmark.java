@@ -0,0 +1,193 @@
+package tilegame;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import graphics.Sprite;
+
+/**
+ * The RenderBenchmark class measures the TileMapRenderer without a display.
+ * Every map is drawn into an offscreen BufferedImage while the camera follows
+ * a scripted path from the left edge of the map to the right edge, going up
+ * and down on the way. Nothing but the renderer runs, so the numbers can be
+ * compared between machines and between versions.
+ * <p>
+ * The tile time is reported per tile on screen. Tiles are mostly drawn as
+ * cached chunks, so it's the average cost of covering a tile, not the cost
+ * of drawing one tile image.
+ * <p>
+ * At scale 1, each map is also drawn along the same path by a
+ * SoftwareRenderer, and the frames are compared pixel by pixel with the
+ * TileMapRenderer's.
+ * <p>
+ * Usage: RenderBenchmark [frames] [width] [height] [scale]
+ */
+public class RenderBenchmark {
+
+	private static final int DEFAULT_FRAMES = 1000;
+	private static final int DEFAULT_WIDTH = 800;
+	private static final int DEFAULT_HEIGHT = 600;
+	// the number of times the camera goes up and down along the path
+	private static final int WAVES = 3;
+	// the number of frames compared with the SoftwareRenderer for each map
+	private static final int COMPARED_FRAMES = 100;
+
+	private final int numFrames;
+	private final int screenWidth;
+	private final int screenHeight;
+	private final float scale;
+
+	private long totalFrames;
+	private long totalTime;
+	private long totalTiles;
+	private long totalTileTime;
+	private long totalSprites;
+	private long totalSpriteTime;
+
+	public static void main(String[] args) {
+		// draw offscreen, even if there is a display
+		if (System.getProperty("java.awt.headless") == null) {
+			System.setProperty("java.awt.headless", "true");
+		}
+		int numFrames = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_FRAMES;
+		int width = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_WIDTH;
+		int height = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_HEIGHT;
+		float scale = args.length > 3 ? Float.parseFloat(args[3]) : 1;
+		new RenderBenchmark(numFrames, width, height, scale).run();
+	}
+
+	/**
+	 * Creates a new RenderBenchmark that draws the specified number of frames
+	 * of the specified size for each map, at the specified scale.
+	 */
+	public RenderBenchmark(int numFrames, int screenWidth, int screenHeight, float scale) {
+		this.numFrames = Math.max(numFrames, 1);
+		this.screenWidth = screenWidth;
+		this.screenHeight = screenHeight;
+		this.scale = scale;
+	}
+
+	/**
+	 * Draws every map and prints the results.
+	 */
+	public void run() {
+		BufferedImage target = new BufferedImage(screenWidth, screenHeight, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = target.createGraphics();
+		ResourceManager resourceManager = new ResourceManager(g.getDeviceConfiguration());
+		resourceManager.setScale(scale);
+		resourceManager.loadResources();
+		TileMapRenderer renderer = resourceManager.loadRenderer();
+		SoftwareRenderer softwareRenderer = scale == 1 ? resourceManager.loadSoftwareRenderer() : null;
+
+		System.out.println("Drawing " + numFrames + " frames of " + screenWidth + "x" + screenHeight
+				+ " at scale " + scale + " for each map");
+		TileMap map = resourceManager.loadNextMap();
+		int firstMap = resourceManager.getCurrentMap();
+		do {
+			// warm up, then measure
+			drawPath(g, renderer, map, Math.min(numFrames, 100), false);
+			drawPath(g, renderer, map, numFrames, true);
+			report("map" + resourceManager.getCurrentMap());
+			if (softwareRenderer != null) {
+				int frames = Math.min(numFrames, COMPARED_FRAMES);
+				int differentFrames = compare(g, target, renderer, softwareRenderer, map, frames);
+				System.out.println("  software renderer: " + differentFrames + " of " + frames
+						+ " frames differ");
+			}
+			map = resourceManager.loadNextMap();
+		} while (resourceManager.getCurrentMap() != firstMap);
+		g.dispose();
+		if (softwareRenderer != null) {
+			softwareRenderer.close();
+		}
+	}
+
+	/**
+	 * Moves the player along the camera path and draws a frame at each step.
+	 */
+	private void drawPath(Graphics2D g, TileMapRenderer renderer, TileMap map, int frames, boolean measure) {
+		Sprite player = map.getPlayer();
+		int maxX = Math.max(TileMapRenderer.tilesToPixels(map.getWidth()) - player.getWidth(), 0);
+		int maxY = Math.max(TileMapRenderer.tilesToPixels(map.getHeight()) - player.getHeight(), 0);
+		for (int i = 0; i < frames; i++) {
+			moveAlongPath(player, maxX, maxY, i, frames);
+
+			long startTime = System.nanoTime();
+			renderer.draw(g, map, screenWidth, screenHeight);
+			long time = System.nanoTime() - startTime;
+			if (measure) {
+				totalFrames++;
+				totalTime += time;
+				totalTiles += renderer.getTilesDrawn();
+				totalTileTime += renderer.getTileTime();
+				totalSprites += renderer.getSpritesDrawn();
+				totalSpriteTime += renderer.getSpriteTime();
+			}
+		}
+	}
+
+	/**
+	 * Moves the player along the camera path, and draws a frame at each step
+	 * with both renderers. Returns the number of frames with a pixel that
+	 * isn't the same.
+	 */
+	private int compare(Graphics2D g, BufferedImage target, TileMapRenderer renderer,
+			SoftwareRenderer softwareRenderer, TileMap map, int frames) {
+		BufferedImage softwareTarget = SoftwareRenderer.createFrame(screenWidth, screenHeight);
+		int[] pixels = ((DataBufferInt) target.getRaster().getDataBuffer()).getData();
+		int[] softwarePixels = ((DataBufferInt) softwareTarget.getRaster().getDataBuffer()).getData();
+		Sprite player = map.getPlayer();
+		int maxX = Math.max(TileMapRenderer.tilesToPixels(map.getWidth()) - player.getWidth(), 0);
+		int maxY = Math.max(TileMapRenderer.tilesToPixels(map.getHeight()) - player.getHeight(), 0);
+		int differentFrames = 0;
+		for (int i = 0; i < frames; i++) {
+			moveAlongPath(player, maxX, maxY, i, frames);
+			renderer.draw(g, map, screenWidth, screenHeight);
+			if (!softwareRenderer.draw(softwareTarget, map)) {
+				break;
+			}
+			for (int j = 0; j < pixels.length; j++) {
+				if (((pixels[j] ^ softwarePixels[j]) & 0xffffff) != 0) {
+					differentFrames++;
+					break;
+				}
+			}
+		}
+		return differentFrames;
+	}
+
+	/**
+	 * Puts the player at step i of the camera path.
+	 */
+	private static void moveAlongPath(Sprite player, int maxX, int maxY, int i, int frames) {
+		double t = frames > 1 ? (double) i / (frames - 1) : 0;
+		player.setX((float) (t * maxX));
+		player.setY((float) (maxY * (0.5 + 0.5 * Math.cos(2 * Math.PI * WAVES * t))));
+	}
+
+	/**
+	 * Prints the results measured since the last report, and resets them.
+	 */
+	private void report(String name) {
+		double seconds = totalTime / 1e9;
+		System.out.println(name + ": "
+				+ format(totalFrames / seconds) + " fps, "
+				+ format(totalTime / 1e3 / totalFrames) + " us/frame, "
+				+ format((double) totalTileTime / Math.max(totalTiles, 1)) + " ns/visible tile, "
+				+ format((double) totalSpriteTime / Math.max(totalSprites, 1)) + " ns/sprite ("
+				+ totalTiles / totalFrames + " tiles, "
+				+ totalSprites / totalFrames + " sprites per frame)");
+		totalFrames = 0;
+		totalTime = 0;
+		totalTiles = 0;
+		totalTileTime = 0;
+		totalSprites = 0;
+		totalSpriteTime = 0;
+	}
+
+	private static String format(double value) {
+		return String.valueOf(Math.round(value * 10) / 10.0);
+	}
+
+}
@@ -0,0 +1,188 @@
+package tilegame;
+
+import java.awt.Image;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import graphics.TextureAtlas;
+
+/**
+ * The RenderQueue class collects the sprite draw commands of a frame and sorts
+ * them by layer and then by source surface, so all the images drawn from the
+ * same surface are drawn one after another. That lets the Java2D pipeline
+ * keep the source surface of a batch. With a TextureAtlas, the source of a
+ * packed image is its atlas page, otherwise it's the image itself.
+ * <p>
+ * Each command has a small integer key: the layer in the high bits and an id
+ * of the source in the low 16 bits. The ids are given out again each frame.
+ * The commands are sorted with a stable radix sort on these keys, one byte
+ * at a time. All the arrays are reused between frames, so a frame doesn't
+ * allocate anything once the queue is big enough.
+ */
+public class RenderQueue {
+
+	private static final int SOURCE_ID_BITS = 16;
+	private static final int MAX_SOURCE_IDS = 1 << SOURCE_ID_BITS;
+
+	private final Map<Image, Integer> sourceIds;
+	private TextureAtlas atlas;
+
+	private Image[] images;
+	private int[] xs;
+	private int[] ys;
+	private int[] keys;
+	// the command indices, in drawing order once sorted
+	private int[] order;
+	private int[] buffer;
+	private final int[] counts = new int[256];
+	private int size;
+
+	/**
+	 * Creates a new, empty RenderQueue.
+	 */
+	public RenderQueue() {
+		this(64);
+	}
+
+	/**
+	 * Creates a new, empty RenderQueue with room for the specified number of
+	 * commands.
+	 */
+	public RenderQueue(int capacity) {
+		sourceIds = new IdentityHashMap<Image, Integer>();
+		allocate(Math.max(capacity, 1));
+	}
+
+	/**
+	 * Sets the TextureAtlas the images are drawn from, so the commands are
+	 * sorted by atlas page. If null, they are sorted by image.
+	 */
+	public void setAtlas(TextureAtlas atlas) {
+		this.atlas = atlas;
+	}
+
+	/**
+	 * Removes all the commands, to start a new frame.
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			images[i] = null;
+		}
+		size = 0;
+		sourceIds.clear();
+	}
+
+	/**
+	 * Adds a command to draw an image at (x, y) on the specified layer. Layers
+	 * are drawn in increasing order, and must be small non-negative numbers.
+	 */
+	public void add(int layer, Image image, int x, int y) {
+		if (size == images.length) {
+			grow();
+		}
+		images[size] = image;
+		xs[size] = x;
+		ys[size] = y;
+		keys[size] = (layer << SOURCE_ID_BITS) | getSourceId(image);
+		size++;
+	}
+
+	/**
+	 * Sorts the commands by layer and source. Commands with the same layer and
+	 * source keep the order they were added in.
+	 */
+	public void sort() {
+		int maxKey = 0;
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+			maxKey = Math.max(maxKey, keys[i]);
+		}
+		// one counting sort pass for each byte that is used by the keys
+		for (int shift = 0; shift < 32 && (maxKey >>> shift) != 0; shift += 8) {
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] = 0;
+			}
+			for (int i = 0; i < size; i++) {
+				counts[(keys[order[i]] >>> shift) & 0xff]++;
+			}
+			int total = 0;
+			for (int i = 0; i < counts.length; i++) {
+				int count = counts[i];
+				counts[i] = total;
+				total += count;
+			}
+			for (int i = 0; i < size; i++) {
+				int command = order[i];
+				buffer[counts[(keys[command] >>> shift) & 0xff]++] = command;
+			}
+			int[] swap = order;
+			order = buffer;
+			buffer = swap;
+		}
+	}
+
+	/**
+	 * Gets the number of commands.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the image of the i-th command in drawing order.
+	 */
+	public Image getImage(int i) {
+		return images[order[i]];
+	}
+
+	/**
+	 * Gets the x position of the i-th command in drawing order.
+	 */
+	public int getX(int i) {
+		return xs[order[i]];
+	}
+
+	/**
+	 * Gets the y position of the i-th command in drawing order.
+	 */
+	public int getY(int i) {
+		return ys[order[i]];
+	}
+
+	private int getSourceId(Image image) {
+		Image source = image;
+		TextureAtlas.Region region = atlas != null ? atlas.getRegion(image) : null;
+		if (region != null) {
+			source = region.getPage();
+		}
+		Integer id = sourceIds.get(source);
+		if (id == null) {
+			// sources past the last id share it, they are only batched less
+			id = Math.min(sourceIds.size(), MAX_SOURCE_IDS - 1);
+			sourceIds.put(source, id);
+		}
+		return id;
+	}
+
+	private void grow() {
+		Image[] oldImages = images;
+		int[] oldXs = xs;
+		int[] oldYs = ys;
+		int[] oldKeys = keys;
+		allocate(images.length * 2);
+		System.arraycopy(oldImages, 0, images, 0, size);
+		System.arraycopy(oldXs, 0, xs, 0, size);
+		System.arraycopy(oldYs, 0, ys, 0, size);
+		System.arraycopy(oldKeys, 0, keys, 0, size);
+	}
+
+	private void allocate(int capacity) {
+		images = new Image[capacity];
+		xs = new int[capacity];
+		ys = new int[capacity];
+		keys = new int[capacity];
+		order = new int[capacity];
+		buffer = new int[capacity];
+	}
+
+}
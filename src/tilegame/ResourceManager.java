@@ -1,21 +1,35 @@
 package tilegame;
 
-import java.awt.Graphics2D;
 import java.awt.GraphicsConfiguration;
 import java.awt.Image;
-import java.awt.Transparency;
-import java.awt.geom.AffineTransform;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.MemoryCacheImageInputStream;
 import javax.swing.ImageIcon;
 
 import graphics.Animation;
+import graphics.CollisionMask;
+import graphics.CompatibleImages;
+import graphics.ScaledImageCache;
 import graphics.Sprite;
+import graphics.TextureAtlas;
+import graphics.TransformedImageCache;
 import tilegame.sprites.Fly;
 import tilegame.sprites.Grub;
 import tilegame.sprites.Player;
@@ -32,8 +46,46 @@ public class ResourceManager {
 	public static final String imagePath = "/images/";
 	public static final String menuPath = "/images/menu/";
 	
+	// the resource that lists the images in the images/ directory
+	public static final String imageIndex = imagePath + "images.txt";
+	
+	// the left-facing creature images, which are mirrored and flipped too
+	private static final String[] CREATURE_IMAGES = {
+		"player1.png", "player2.png", "player3.png",
+		"fly1.png", "fly2.png", "fly3.png",
+		"grub1.png", "grub2.png",
+	};
+	
+	// the transforms of the right-facing, left-facing "dead" and right-facing
+	// "dead" creature images
+	private static final int[] CREATURE_TRANSFORMS = {
+		TransformedImageCache.MIRROR, TransformedImageCache.FLIP, TransformedImageCache.MIRROR_FLIP,
+	};
+	
+	// map file lines that start a tile layer section
+	private static final String SOLID_SECTION = "[solid]";
+	private static final String DECORATION_SECTION = "[decoration]";
+	private static final String FOREGROUND_SECTION = "[foreground]";
+	
 	private final GraphicsConfiguration gc;
 	
+	// the images decoded by loadResources(), by name, and the mirrored and
+	// flipped creature images
+	private final Map<String, Image> images = new HashMap<String, Image>();
+	private final TransformedImageCache transformedImages;
+	private boolean prewarmSprites;
+	// the collision masks of the sprite frames. weak, so the masks of
+	// mirrored images dropped by the TransformedImageCache are dropped too
+	private final Map<Image, CollisionMask> collisionMasks = new WeakHashMap<Image, CollisionMask>();
+	
+	// the images packed in the atlas, and the scaled images and atlas of
+	// each scale used so far
+	private final List<Image> atlasImages = new ArrayList<Image>();
+	private final Map<Float, ScaledImageCache> scaledImageCaches = new HashMap<Float, ScaledImageCache>();
+	private final Map<Float, TextureAtlas> atlases = new HashMap<Float, TextureAtlas>();
+	private ScaledImageCache scaledImages;
+	private TextureAtlas atlas;
+	
 	private TileMapRenderer renderer;
 	private List<Image> tiles;
 	private int currentMap;
@@ -47,81 +99,254 @@ public class ResourceManager {
 	private Sprite musicSprite;
 	private Sprite goalSprite;
 	
+	// the "host" PowerUps whose clones share their animation
+	private final List<PowerUp> sharedClockSprites = new ArrayList<PowerUp>();
+	
 	/**
 	 * Creates a new ResourceManager with the specified GraphicsConfiguration.
 	 */
 	public ResourceManager(GraphicsConfiguration gc) {
 		this.gc = gc;
+		transformedImages = new TransformedImageCache(gc);
+		setScale(1);
+	}
+	
+	/**
+	 * Sets whether the mirrored and flipped creature images are all created
+	 * (in parallel) and packed in the atlas by loadResources(). Otherwise,
+	 * which is the default, each one is created the first time it's shown.
+	 */
+	public void setPrewarmSprites(boolean prewarmSprites) {
+		this.prewarmSprites = prewarmSprites;
+	}
+	
+	public boolean isPrewarmSprites() {
+		return prewarmSprites;
+	}
+	
+	/**
+	 * Gets the cache of mirrored and flipped creature images, to change its
+	 * memory budget.
+	 */
+	public TransformedImageCache getTransformedImages() {
+		return transformedImages;
 	}
 	
 	public void loadResources(){
+		loadImages();
 		loadTileImages();
 		loadCreatureSprites();
 		loadPowerUpSprites();
+		// pack the tiles and sprite frames into the atlas
+		for (TextureAtlas scaledAtlas : atlases.values()) {
+			scaledAtlas.pack();
+		}
+	}
+	
+	/**
+	 * Sets the scale to draw at. The tiles, sprite frames and backgrounds are
+	 * scaled once per scale, and kept, so going back to a scale used before
+	 * costs nothing. The renderer loaded last is updated.
+	 */
+	public void setScale(float scale) {
+		ScaledImageCache images = scaledImageCaches.get(scale);
+		if (images == null) {
+			images = new ScaledImageCache(gc, scale);
+			scaledImageCaches.put(scale, images);
+		}
+		TextureAtlas scaledAtlas = atlases.get(scale);
+		if (scaledAtlas == null) {
+			scaledAtlas = new TextureAtlas(gc);
+			for (Image image : atlasImages) {
+				scaledAtlas.add(image, images.get(image));
+			}
+			scaledAtlas.pack();
+			atlases.put(scale, scaledAtlas);
+		}
+		scaledImages = images;
+		atlas = scaledAtlas;
+		if (renderer != null) {
+			renderer.setAtlas(atlas);
+			renderer.setScaledImages(scaledImages);
+		}
+	}
+	
+	/**
+	 * Gets the scale to draw at.
+	 */
+	public float getScale() {
+		return scaledImages.getScale();
+	}
+	
+	/**
+	 * Gets the TextureAtlas the tiles and sprite frames are packed in, at
+	 * the current scale.
+	 */
+	public TextureAtlas getAtlas() {
+		return atlas;
 	}
 
 	// -----------------------------------------------------------
 	// code for loading sprites and images
 	// -----------------------------------------------------------
 
+	/**
+	 * Decodes every image listed in the image index, in parallel. When
+	 * pre-warming, the mirrored and flipped creature images are created as
+	 * soon as the images they come from are decoded.
+	 */
+	private void loadImages() {
+		List<String> names = loadImageIndex();
+		int threads = Math.max(Math.min(Runtime.getRuntime().availableProcessors(), names.size()), 1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			Map<String, Future<Image>> decodes = new HashMap<String, Future<Image>>();
+			for (final String name : names) {
+				decodes.put(name, executor.submit(new Callable<Image>() {
+					public Image call() throws IOException {
+						return readImage(imagePath + name);
+					}
+				}));
+			}
+
+			for (String name : CREATURE_IMAGES) {
+				if (!decodes.containsKey(name)) {
+					throw new IllegalStateException(imagePath + name + ":image Not Found in " + imageIndex);
+				}
+			}
+
+			// the transforms are queued after all the decodes, so a transform
+			// never waits for a task queued behind it
+			Map<String, List<Future<Image>>> transforms = new HashMap<String, List<Future<Image>>>();
+			if (prewarmSprites) {
+				for (String name : CREATURE_IMAGES) {
+					List<Future<Image>> futures = new ArrayList<Future<Image>>();
+					for (int transform : CREATURE_TRANSFORMS) {
+						futures.add(executor.submit(transform(decodes.get(name), transform)));
+					}
+					transforms.put(name, futures);
+				}
+			}
+
+			for (String name : names) {
+				images.put(name, getResult(decodes.get(name), name));
+			}
+			for (Map.Entry<String, List<Future<Image>>> entry : transforms.entrySet()) {
+				Image image = images.get(entry.getKey());
+				for (int i = 0; i < CREATURE_TRANSFORMS.length; i++) {
+					Image transformedImage = getResult(entry.getValue().get(i), entry.getKey());
+					transformedImages.put(image, CREATURE_TRANSFORMS[i], transformedImage);
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Reads the names of the images in the image index, skipping blank lines
+	 * and comments.
+	 */
+	private List<String> loadImageIndex() {
+		InputStream inputStream = getClass().getResourceAsStream(imageIndex);
+		if (inputStream == null) {
+			throw new IllegalStateException(imageIndex + ":image index Not Found!");
+		}
+		List<String> names = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.length() > 0 && !line.startsWith("#")) {
+					names.add(line);
+				}
+			}
+			reader.close();
+		} catch (IOException ex) {
+			throw new IllegalStateException(imageIndex + ":image index not readable", ex);
+		}
+		return names;
+	}
+
+	/**
+	 * Creates a task that mirrors or flips an image once it's decoded.
+	 */
+	private Callable<Image> transform(final Future<Image> image, final int transform) {
+		return new Callable<Image>() {
+			public Image call() throws Exception {
+				return TransformedImageCache.createTransformedImage(gc, image.get(), transform);
+			}
+		};
+	}
+
+	/**
+	 * Waits for an image task to finish, and gets its image.
+	 */
+	private static Image getResult(Future<Image> future, String name) {
+		try {
+			return future.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(imagePath + name + ":image loading interrupted", ex);
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			// a transform fails when the image it waits for fails
+			if (cause instanceof ExecutionException) {
+				cause = cause.getCause();
+			}
+			throw new IllegalStateException(imagePath + name + ":image not loaded", cause);
+		}
+	}
+
 	private void loadTileImages() {
-		// keep looking for tile A,B,C, etc. this makes it
-		// easy to drop new tiles in the images/ directory
+		// keep looking for tile A,B,C, etc. this makes it easy to
+		// drop new tiles in the images/ directory (and the image index)
 		tiles = new ArrayList<Image>();
 		char ch = 'A';
-		while (true) {
-			String name = "tile_" + ch + ".png";
-			InputStream input = getClass().getResourceAsStream(imagePath + name);
-			if (input == null) {
-				break;
-			}
-			tiles.add(loadImage(name));
+		while (images.containsKey("tile_" + ch + ".png")) {
+			tiles.add(loadAtlasImage("tile_" + ch + ".png"));
 			ch++;
 		}
 	}
 
 	private void loadCreatureSprites() {
 
-		Image[][] images = new Image[4][];
-
-		// load left-facing images
-		images[0] = new Image[] { 
-			loadImage("player1.png"), 
-			loadImage("player2.png"), 
-			loadImage("player3.png"),
-			loadImage("fly1.png"), 
-			loadImage("fly2.png"), 
-			loadImage("fly3.png"), 
-			loadImage("grub1.png"),
-			loadImage("grub2.png"),
-		};
-
-		images[1] = new Image[images[0].length];
-		images[2] = new Image[images[0].length];
-		images[3] = new Image[images[0].length];
-		for (int i = 0; i < images[0].length; i++) {
-			// right-facing images
-			images[1][i] = getMirrorImage(images[0][i]);
-			// left-facing "dead" images
-			images[2][i] = getFlippedImage(images[0][i]);
-			// right-facing "dead" images
-			images[3][i] = getFlippedImage(images[1][i]);
+		// get the left-facing images
+		Image[] images = new Image[CREATURE_IMAGES.length];
+		for (int i = 0; i < CREATURE_IMAGES.length; i++) {
+			images[i] = this.images.get(CREATURE_IMAGES[i]);
+			addToAtlas(images[i]);
+			if (prewarmSprites) {
+				for (int transform : CREATURE_TRANSFORMS) {
+					addToAtlas(transformedImages.get(images[i], transform));
+					getCollisionMask(transformedImages.get(images[i], transform));
+				}
+			}
 		}
 
-		// create creature animations
+		// create creature animations. the right-facing and "dead" animations
+		// show the left-facing frames mirrored or flipped
 		Animation[] playerAnim = new Animation[4];
 		Animation[] flyAnim = new Animation[4];
 		Animation[] grubAnim = new Animation[4];
-		for (int i = 0; i < 4; i++) {
-			playerAnim[i] = createPlayerAnim(images[i][0], images[i][1], images[i][2]);
-			flyAnim[i] = createFlyAnim(images[i][3], images[i][4], images[i][5]);
-			grubAnim[i] = createGrubAnim(images[i][6], images[i][7]);
+		playerAnim[0] = createPlayerAnim(images[0], images[1], images[2]);
+		flyAnim[0] = createFlyAnim(images[3], images[4], images[5]);
+		grubAnim[0] = createGrubAnim(images[6], images[7]);
+		for (int i = 1; i < 4; i++) {
+			int transform = CREATURE_TRANSFORMS[i - 1];
+			playerAnim[i] = new Animation(playerAnim[0], transformedImages, transform);
+			flyAnim[i] = new Animation(flyAnim[0], transformedImages, transform);
+			grubAnim[i] = new Animation(grubAnim[0], transformedImages, transform);
 		}
 
 		// create creature sprites
 		playerSprite = new Player(playerAnim[0], playerAnim[1], playerAnim[2], playerAnim[3]);
 		flySprite = new Fly(flyAnim[0], flyAnim[1], flyAnim[2], flyAnim[3]);
 		grubSprite = new Grub(grubAnim[0], grubAnim[1], grubAnim[2], grubAnim[3]);
+		setHitbox(playerSprite, playerAnim[0], true);
+		setHitbox(flySprite, flyAnim[0], true);
+		setHitbox(grubSprite, grubAnim[0], true);
 	}
 
 	private Animation createPlayerAnim(Image player1, Image player2, Image player3) {
@@ -154,70 +379,217 @@ public class ResourceManager {
 	private void loadPowerUpSprites() {
 		// create "goal" sprite
 		Animation anim = new Animation();
-		anim.addFrame(loadImage("heart1.png"), 150);
-		anim.addFrame(loadImage("heart2.png"), 150);
-		anim.addFrame(loadImage("heart3.png"), 150);
-		anim.addFrame(loadImage("heart2.png"), 150);
-		goalSprite = new PowerUp.Goal(anim);
+		anim.addFrame(loadAtlasImage("heart1.png"), 150);
+		anim.addFrame(loadAtlasImage("heart2.png"), 150);
+		anim.addFrame(loadAtlasImage("heart3.png"), 150);
+		anim.addFrame(loadAtlasImage("heart2.png"), 150);
+		goalSprite = createSharedClockSprite(new PowerUp.Goal(anim));
 
 		// create "star" sprite
 		anim = new Animation();
-		anim.addFrame(loadImage("star1.png"), 100);
-		anim.addFrame(loadImage("star2.png"), 100);
-		anim.addFrame(loadImage("star3.png"), 100);
-		anim.addFrame(loadImage("star4.png"), 100);
-		coinSprite = new PowerUp.Star(anim);
+		anim.addFrame(loadAtlasImage("star1.png"), 100);
+		anim.addFrame(loadAtlasImage("star2.png"), 100);
+		anim.addFrame(loadAtlasImage("star3.png"), 100);
+		anim.addFrame(loadAtlasImage("star4.png"), 100);
+		coinSprite = createSharedClockSprite(new PowerUp.Star(anim));
 
 		// create "music" sprite
 		anim = new Animation();
-		anim.addFrame(loadImage("music1.png"), 150);
-		anim.addFrame(loadImage("music2.png"), 150);
-		anim.addFrame(loadImage("music3.png"), 150);
-		anim.addFrame(loadImage("music2.png"), 150);
-		musicSprite = new PowerUp.Music(anim);
+		anim.addFrame(loadAtlasImage("music1.png"), 150);
+		anim.addFrame(loadAtlasImage("music2.png"), 150);
+		anim.addFrame(loadAtlasImage("music3.png"), 150);
+		anim.addFrame(loadAtlasImage("music2.png"), 150);
+		musicSprite = createSharedClockSprite(new PowerUp.Music(anim));
+	}
+	
+	/**
+	 * Makes the clones of a "host" PowerUp share its animation, as all the
+	 * PowerUps of a kind animate the same.
+	 */
+	private PowerUp createSharedClockSprite(PowerUp powerUp) {
+		setHitbox(powerUp, powerUp.getAnimation(), false);
+		powerUp.setSharedClock(true);
+		sharedClockSprites.add(powerUp);
+		return powerUp;
+	}
+	
+	/**
+	 * Sets the hitbox of a "host" sprite to the union of the visible bounds of
+	 * the frames of its animation, so pixels transparent in every frame never
+	 * collide. With mirrored, the bounds of the mirrored frames are added
+	 * too, so the hitbox stays the same when a creature turns around. The
+	 * collision masks of the frames are created too.
+	 */
+	private void setHitbox(Sprite sprite, Animation anim, boolean mirrored) {
+		Rectangle hitbox = null;
+		for (int i = 0; i < anim.getFrameCount(); i++) {
+			Image frame = anim.getFrame(i);
+			getCollisionMask(frame);
+			Rectangle bounds = CompatibleImages.getVisibleBounds(frame);
+			if (bounds.isEmpty()) {
+				continue;
+			}
+			if (mirrored) {
+				bounds.add(new Rectangle(frame.getWidth(null) - bounds.x - bounds.width, bounds.y, bounds.width,
+						bounds.height));
+			}
+			hitbox = (hitbox == null) ? bounds : hitbox.union(bounds);
+		}
+		if (hitbox != null) {
+			sprite.setHitbox(hitbox.x, hitbox.y, hitbox.width, hitbox.height);
+		}
+	}
+	
+	/**
+	 * Gets the CollisionMask of a sprite image, creating it the first time.
+	 * Masks of the frames of the "host" sprites are created by
+	 * loadResources(), and masks of mirrored images that weren't pre-warmed
+	 * the first time they collide. Returns null if the image is null.
+	 */
+	public CollisionMask getCollisionMask(Image image) {
+		if (image == null) {
+			return null;
+		}
+		CollisionMask mask = collisionMasks.get(image);
+		if (mask == null) {
+			mask = new CollisionMask(image);
+			collisionMasks.put(image, mask);
+		}
+		return mask;
+	}
+	
+	/**
+	 * Advances the animations shared by PowerUps. Called once per update, as
+	 * PowerUps with a shared clock don't advance their own animation.
+	 */
+	public void updateSharedAnimations(long elapsedTime) {
+		for (int i = 0; i < sharedClockSprites.size(); i++) {
+			sharedClockSprites.get(i).getAnimation().update(elapsedTime);
+		}
 	}
 	
 	public TileMapRenderer loadRenderer() {
-		TileMapRenderer renderer = new TileMapRenderer();
-		renderer.withBackground(loadImage("background.png"));
+		renderer = new TileMapRenderer();
+		renderer.setScaledImages(scaledImages);
+		List<Image> backgrounds = loadBackgrounds();
+		renderer.withBackground(backgrounds.get(0));
+		for (int i = 1; i < backgrounds.size(); i++) {
+			renderer.addBackgroundLayer(backgrounds.get(i));
+		}
+		renderer.setAtlas(atlas);
 		return renderer;
 	}
 	
 	/**
-	 * Gets an image from the images/ directory.
+	 * Creates a SoftwareRenderer with the same background layers as the
+	 * TileMapRenderer. It draws at scale 1, and should be closed when done.
+	 */
+	public SoftwareRenderer loadSoftwareRenderer() {
+		SoftwareRenderer softwareRenderer = new SoftwareRenderer();
+		List<Image> backgrounds = loadBackgrounds();
+		softwareRenderer.withBackground(backgrounds.get(0));
+		for (int i = 1; i < backgrounds.size(); i++) {
+			softwareRenderer.addBackgroundLayer(backgrounds.get(i));
+		}
+		return softwareRenderer;
+	}
+	
+	/**
+	 * Loads background.png, then background2, background3, etc. as long as
+	 * they exist. Each one is drawn over the previous ones as another
+	 * parallax layer.
+	 */
+	private List<Image> loadBackgrounds() {
+		List<Image> backgrounds = new ArrayList<Image>();
+		backgrounds.add(loadImage("background.png"));
+		int layer = 2;
+		while (getClass().getResource(imagePath + "background" + layer + ".png") != null) {
+			backgrounds.add(loadImage("background" + layer + ".png"));
+			layer++;
+		}
+		return backgrounds;
+	}
+	
+	/**
+	 * Gets an image from the images/ directory, as an image compatible with
+	 * the display. Images listed in the image index are only decoded once, by
+	 * loadResources().
 	 */
 	public Image loadImage(String name) {
-		String filename = imagePath + name;
-		return loadImageIcon(filename).getImage();
+		Image image = images.get(name);
+		if (image == null) {
+			image = loadCompatibleImage(imagePath + name);
+		}
+		return image;
 	}
 	
+	/**
+	 * Gets an image from the images/ directory and adds it to the atlas.
+	 */
+	private Image loadAtlasImage(String name) {
+		Image image = loadImage(name);
+		addToAtlas(image);
+		return image;
+	}
+	
+	/**
+	 * Adds an image to the atlas of every scale, as a scaled copy at scales
+	 * other than 1.
+	 */
+	private void addToAtlas(Image image) {
+		if (atlasImages.contains(image)) {
+			return;
+		}
+		atlasImages.add(image);
+		for (Map.Entry<Float, TextureAtlas> entry : atlases.entrySet()) {
+			entry.getValue().add(image, scaledImageCaches.get(entry.getKey()).get(image));
+		}
+	}
+	
+	/**
+	 * Gets an icon of an image, like a menu image, as an image compatible
+	 * with the display.
+	 */
 	public ImageIcon loadImageIcon(String path){
-		return new ImageIcon(getClass().getResource(path));
+		return new ImageIcon(loadCompatibleImage(path));
+	}
+	
+	private Image loadCompatibleImage(String path) {
+		try {
+			return readImage(path);
+		} catch (IOException ex) {
+			throw new IllegalStateException(path + ":image not loaded", ex);
+		}
+	}
+	
+	/**
+	 * Decodes an image with ImageIO, and copies it into a compatible image.
+	 * Safe to call from any thread.
+	 */
+	private Image readImage(String path) throws IOException {
+		InputStream inputStream = getClass().getResourceAsStream(path);
+		if (inputStream == null) {
+			throw new IOException(path + ":image Not Found!");
+		}
+		BufferedImage image;
+		try {
+			// cache the stream in memory rather than in a temporary file
+			image = ImageIO.read(new MemoryCacheImageInputStream(inputStream));
+		} finally {
+			inputStream.close();
+		}
+		if (image == null) {
+			throw new IOException(path + ":image format not supported");
+		}
+		return CompatibleImages.toCompatibleImage(gc, image);
 	}
 
 	public Image getMirrorImage(Image image) {
-		return getScaledImage(image, -1, 1);
+		return transformedImages.get(image, TransformedImageCache.MIRROR);
 	}
 
 	public Image getFlippedImage(Image image) {
-		return getScaledImage(image, 1, -1);
-	}
-
-	private Image getScaledImage(Image image, float x, float y) {
-		// set up the transform
-		AffineTransform transform = new AffineTransform();
-		transform.scale(x, y);
-		transform.translate((x - 1) * image.getWidth(null) / 2, (y - 1) * image.getHeight(null) / 2);
-
-		// create a transparent (not translucent) image
-		Image newImage = gc.createCompatibleImage(image.getWidth(null), image.getHeight(null), Transparency.BITMASK);
-
-		// draw the transformed image
-		Graphics2D g = (Graphics2D) newImage.getGraphics();
-		g.drawImage(image, transform, null);
-		g.dispose();
-
-		return newImage;
+		return transformedImages.get(image, TransformedImageCache.FLIP);
 	}
 
 	public TileMap loadNextMap() {
@@ -239,6 +611,13 @@ public class ResourceManager {
 		return map;
 	}
 	
+	/**
+	 * Gets the number of the last map loaded, starting from 1.
+	 */
+	public int getCurrentMap() {
+		return currentMap;
+	}
+	
 	public TileMap reloadMap() {
 		try {
 			return loadMap(mapPath + "map" + currentMap + ".txt");
@@ -250,6 +629,9 @@ public class ResourceManager {
 
 	private TileMap loadMap(String filename) throws IOException {
 		List<String> lines = new ArrayList<String>();
+		List<String> decorationLines = new ArrayList<String>();
+		List<String> foregroundLines = new ArrayList<String>();
+		List<String> layerLines = lines;
 		int width = 0;
 		int height = 0;
 
@@ -267,10 +649,19 @@ public class ResourceManager {
 				break;
 			}
 
+			// switch to the layer named by a section line
+			if (line.equals(SOLID_SECTION)) {
+				layerLines = lines;
+			} else if (line.equals(DECORATION_SECTION)) {
+				layerLines = decorationLines;
+			} else if (line.equals(FOREGROUND_SECTION)) {
+				layerLines = foregroundLines;
 			// add every line except for comments
-			if (!line.startsWith("#")) {
-				lines.add(line);
-				width = Math.max(width, line.length());
+			} else if (!line.startsWith("#")) {
+				layerLines.add(line);
+				if (layerLines == lines) {
+					width = Math.max(width, line.length());
+				}
 			}
 		}
 
@@ -302,6 +693,8 @@ public class ResourceManager {
 				}
 			}
 		}
+		loadLayer(newMap.getDecorationLayer(), decorationLines);
+		loadLayer(newMap.getForegroundLayer(), foregroundLines);
 
 		// add the player to the map
 		Sprite player = playerSprite.clone();
@@ -312,6 +705,24 @@ public class ResourceManager {
 		return newMap;
 	}
 
+	/**
+	 * Fills a sparse layer from its section lines. Only tiles are read,
+	 * anything outside of the solid layer's size is ignored.
+	 */
+	private void loadLayer(SparseTileLayer layer, List<String> lines) {
+		int height = Math.min(lines.size(), layer.getHeight());
+		for (int y = 0; y < height; y++) {
+			String line = lines.get(y);
+			int width = Math.min(line.length(), layer.getWidth());
+			for (int x = 0; x < width; x++) {
+				int tile = line.charAt(x) - 'A';
+				if (tile >= 0 && tile < tiles.size()) {
+					layer.setTile(x, y, tiles.get(tile));
+				}
+			}
+		}
+	}
+
 	private void addSprite(TileMap map, Sprite hostSprite, int tileX, int tileY) {
 		if (hostSprite == null) {
 			return;
@@ -0,0 +1,18 @@
+package tilegame;
+
+/**
+ * The ScalarMotionIntegrator class steps one body at a time. It runs on any
+ * Java runtime, and gives the same results as the VectorMotionIntegrator.
+ */
+public class ScalarMotionIntegrator implements MotionIntegrator {
+
+	public void integrate(int count, float time, float[] x, float[] y, float[] vx, float[] vy, float[] gravity,
+			float[] newX, float[] newY) {
+		for (int i = 0; i < count; i++) {
+			vy[i] = vy[i] + gravity[i] * time;
+			newX[i] = x[i] + vx[i] * time;
+			newY[i] = y[i] + vy[i] * time;
+		}
+	}
+
+}
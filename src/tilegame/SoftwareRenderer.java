@@ -0,0 +1,446 @@
+package tilegame;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import graphics.Sprite;
+import tilegame.sprites.Creature;
+
+/**
+ * The SoftwareRenderer class draws a TileMap like the TileMapRenderer does,
+ * but without Java2D: the background, tiles and sprites are copied pixel by
+ * pixel into the int[] of a TYPE_INT_RGB BufferedImage. This is useful where
+ * there's no accelerated display, like on servers, or to record and make
+ * thumbnails.
+ * <p>
+ * The frame is split in horizontal bands that are drawn in parallel by a
+ * pool of threads, one band per thread. Opaque rows are copied with
+ * System.arraycopy(), transparent pixels are skipped and translucent pixels
+ * are blended with the same 8-bit math as Java2D's software loops, so the
+ * result is meant to be the same as the TileMapRenderer's at scale 1 on a
+ * TYPE_INT_RGB image. RenderBenchmark checks this for every map.
+ */
+public class SoftwareRenderer {
+
+	private final ExecutorService executor;
+	private final List<BandTask> bands;
+	private final List<Future<Object>> results = new ArrayList<Future<Object>>();
+	// set when a frame is given up, so the bands that haven't started skip it
+	private volatile boolean stopped;
+	private final Map<Image, Pixels> pixelCache;
+
+	private final List<Image> backgroundLayers = new ArrayList<Image>();
+
+	// the frame being drawn, shared with the band tasks
+	private TileMap map;
+	private int[] frame;
+	private int screenWidth;
+	private int screenHeight;
+	private int offsetX;
+	private int offsetY;
+	private Pixels[] backgroundPixels = new Pixels[0];
+	private int[] backgroundXs = new int[0];
+	private int[] backgroundYs = new int[0];
+	// the visible tiles of each layer, row by row
+	private int firstTileX;
+	private int firstTileY;
+	private int tileColumns;
+	private int tileRows;
+	private Pixels[] decorationTiles = new Pixels[0];
+	private Pixels[] solidTiles = new Pixels[0];
+	private Pixels[] foregroundTiles = new Pixels[0];
+	private final RenderQueue renderQueue = new RenderQueue();
+	// the pixels of the queued sprites, in drawing order
+	private Pixels[] spriteImages = new Pixels[64];
+
+	/**
+	 * Creates a new SoftwareRenderer that uses one thread per processor.
+	 */
+	public SoftwareRenderer() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a new SoftwareRenderer that draws with the specified number of
+	 * threads.
+	 */
+	public SoftwareRenderer(int numThreads) {
+		numThreads = Math.max(1, numThreads);
+		executor = new ThreadPoolExecutor(numThreads, numThreads, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(), new RendererThreadFactory());
+		bands = new ArrayList<BandTask>();
+		for (int i = 0; i < numThreads; i++) {
+			bands.add(new BandTask());
+		}
+		// weak, so the pixels of images dropped by the game (like mirrored
+		// images dropped by a TransformedImageCache) are dropped too
+		pixelCache = new WeakHashMap<Image, Pixels>();
+	}
+
+	/**
+	 * Sets the background to draw, replacing any background layers.
+	 */
+	public void withBackground(Image background) {
+		backgroundLayers.clear();
+		if (background != null) {
+			addBackgroundLayer(background);
+		}
+	}
+
+	/**
+	 * Adds a parallax background layer, drawn over the layers added before.
+	 */
+	public void addBackgroundLayer(Image image) {
+		backgroundLayers.add(image);
+	}
+
+	/**
+	 * Creates a frame image of the specified size this renderer can draw into.
+	 */
+	public static BufferedImage createFrame(int width, int height) {
+		return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+	}
+
+	/**
+	 * Draws the specified TileMap into a TYPE_INT_RGB frame image. Returns
+	 * true when the whole frame is drawn. If the calling thread is
+	 * interrupted while waiting for the bands, the bands that haven't started
+	 * are skipped, and the ones that have are still waited for. Then returns
+	 * false with the interrupt status set, and the frame is only partly
+	 * drawn. No band is running once this returns.
+	 */
+	public boolean draw(BufferedImage target, TileMap map) {
+		if (target.getType() != BufferedImage.TYPE_INT_RGB) {
+			throw new IllegalArgumentException("The target must be a TYPE_INT_RGB image");
+		}
+		this.map = map;
+		frame = ((DataBufferInt) target.getRaster().getDataBuffer()).getData();
+		screenWidth = target.getWidth();
+		screenHeight = target.getHeight();
+		offsetX = TileMapRenderer.getOffsetX(map, screenWidth);
+		offsetY = TileMapRenderer.getOffsetY(map, screenHeight);
+		collectBackgroundLayers();
+		collectVisibleTiles();
+		collectVisibleSprites();
+
+		// split the frame in bands of about the same height
+		int bandHeight = (screenHeight + bands.size() - 1) / bands.size();
+		for (int i = 0; i < bands.size(); i++) {
+			BandTask band = bands.get(i);
+			band.top = Math.min(i * bandHeight, screenHeight);
+			band.bottom = Math.min(band.top + bandHeight, screenHeight);
+		}
+		stopped = false;
+		for (int i = 0; i < bands.size(); i++) {
+			results.add(executor.submit(bands.get(i)));
+		}
+		
+		// wait for every band, even after an interrupt or a failure, so none
+		// is left reading the state of this frame
+		boolean interrupted = false;
+		Throwable failure = null;
+		for (int i = 0; i < results.size(); i++) {
+			Future<Object> result = results.get(i);
+			while (true) {
+				try {
+					result.get();
+					break;
+				} catch (InterruptedException ex) {
+					interrupted = true;
+					stopped = true;
+				} catch (ExecutionException ex) {
+					if (failure == null) {
+						failure = ex.getCause();
+					}
+					stopped = true;
+					break;
+				}
+			}
+		}
+		results.clear();
+		this.map = null;
+		frame = null;
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if (failure != null) {
+			throw new RuntimeException(failure);
+		}
+		return !interrupted;
+	}
+
+	/**
+	 * Stops the threads of this renderer.
+	 */
+	public void close() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Collects the pixels and positions of the background layers.
+	 */
+	private void collectBackgroundLayers() {
+		int count = backgroundLayers.size();
+		if (backgroundPixels.length != count) {
+			backgroundPixels = new Pixels[count];
+			backgroundXs = new int[count];
+			backgroundYs = new int[count];
+		}
+		int mapWidth = TileMapRenderer.tilesToPixels(map.getWidth());
+		for (int i = 0; i < count; i++) {
+			Pixels pixels = getPixels(backgroundLayers.get(i));
+			backgroundPixels[i] = pixels;
+			backgroundXs[i] = ParallaxLayer.getX(pixels.width, mapWidth, screenWidth, offsetX);
+			backgroundYs[i] = ParallaxLayer.getY(pixels.height, screenHeight);
+		}
+	}
+
+	/**
+	 * Collects the pixels of the tiles on screen, so the band tasks neither
+	 * look up the layers nor touch the pixel cache.
+	 */
+	private void collectVisibleTiles() {
+		firstTileX = TileMapRenderer.pixelsToTiles(-offsetX);
+		firstTileY = TileMapRenderer.pixelsToTiles(-offsetY);
+		tileColumns = TileMapRenderer.pixelsToTiles(screenWidth - offsetX - 1) - firstTileX + 1;
+		tileRows = TileMapRenderer.pixelsToTiles(screenHeight - offsetY - 1) - firstTileY + 1;
+		int numTiles = tileColumns * tileRows;
+		if (solidTiles.length < numTiles) {
+			decorationTiles = new Pixels[numTiles];
+			solidTiles = new Pixels[numTiles];
+			foregroundTiles = new Pixels[numTiles];
+		}
+
+		SparseTileLayer decoration = map.getDecorationLayer();
+		SparseTileLayer foreground = map.getForegroundLayer();
+		for (int row = 0; row < tileRows; row++) {
+			for (int column = 0; column < tileColumns; column++) {
+				int x = firstTileX + column;
+				int y = firstTileY + row;
+				int i = row * tileColumns + column;
+				decorationTiles[i] = getPixels(decoration.getTile(x, y));
+				solidTiles[i] = getPixels(map.getTile(x, y));
+				foregroundTiles[i] = getPixels(foreground.getTile(x, y));
+			}
+		}
+	}
+
+	/**
+	 * Collects the player and the Sprites on screen, sorted in the same
+	 * drawing order as the TileMapRenderer's. Also wakes up the Creatures on
+	 * screen, like the TileMapRenderer does.
+	 */
+	private void collectVisibleSprites() {
+		renderQueue.clear();
+		Sprite player = map.getPlayer();
+		renderQueue.add(TileMapRenderer.LAYER_PLAYER, player.getImage(), Math.round(player.getX()),
+				Math.round(player.getY()));
+
+		Iterator<Sprite> i = map.getSprites();
+		while (i.hasNext()) {
+			Sprite sprite = i.next();
+			int spriteX = Math.round(sprite.getX());
+			int spriteY = Math.round(sprite.getY());
+			if (!TileMapRenderer.isOnScreen(sprite, spriteX, spriteY, screenWidth, screenHeight, offsetX, offsetY)) {
+				continue;
+			}
+			renderQueue.add(TileMapRenderer.LAYER_SPRITES, sprite.getImage(), spriteX, spriteY);
+			if (sprite instanceof Creature) {
+				((Creature) sprite).wakeUp();
+			}
+		}
+		renderQueue.sort();
+
+		if (spriteImages.length < renderQueue.size()) {
+			spriteImages = new Pixels[renderQueue.size() * 2];
+		}
+		for (int j = 0; j < renderQueue.size(); j++) {
+			spriteImages[j] = getPixels(renderQueue.getImage(j));
+		}
+	}
+
+	/**
+	 * Gets the ARGB pixels of an image, grabbing them the first time.
+	 */
+	private Pixels getPixels(Image image) {
+		if (image == null) {
+			return null;
+		}
+		Pixels pixels = pixelCache.get(image);
+		if (pixels == null) {
+			pixels = new Pixels(image);
+			pixelCache.put(image, pixels);
+		}
+		return pixels;
+	}
+
+	/**
+	 * Draws the rows top (inclusive) to bottom (exclusive) of the frame.
+	 */
+	private void drawBand(int top, int bottom) {
+		// draw black background, if needed
+		if (backgroundPixels.length == 0 || !backgroundPixels[0].opaque || screenHeight > backgroundPixels[0].height) {
+			Arrays.fill(frame, top * screenWidth, bottom * screenWidth, 0);
+		}
+		for (int i = 0; i < backgroundPixels.length; i++) {
+			blit(backgroundPixels[i], backgroundXs[i], backgroundYs[i], top, bottom);
+		}
+
+		// draw the tiles that cross this band
+		int fromRow = TileMapRenderer.pixelsToTiles(top - offsetY) - firstTileY;
+		int toRow = TileMapRenderer.pixelsToTiles(bottom - offsetY - 1) - firstTileY;
+		drawTiles(decorationTiles, fromRow, toRow, top, bottom);
+		drawTiles(solidTiles, fromRow, toRow, top, bottom);
+
+		// draw the sprites
+		for (int i = 0; i < renderQueue.size(); i++) {
+			blit(spriteImages[i], renderQueue.getX(i) + offsetX, renderQueue.getY(i) + offsetY, top, bottom);
+		}
+
+		// draw the foreground over the sprites
+		drawTiles(foregroundTiles, fromRow, toRow, top, bottom);
+	}
+
+	private void drawTiles(Pixels[] tiles, int fromRow, int toRow, int top, int bottom) {
+		for (int row = fromRow; row <= toRow; row++) {
+			int tileY = TileMapRenderer.tilesToPixels(firstTileY + row) + offsetY;
+			for (int column = 0; column < tileColumns; column++) {
+				int tileX = TileMapRenderer.tilesToPixels(firstTileX + column) + offsetX;
+				blit(tiles[row * tileColumns + column], tileX, tileY, top, bottom);
+			}
+		}
+	}
+
+	/**
+	 * Copies an image to (x, y) of the frame, clipped to the screen and to the
+	 * rows top (inclusive) to bottom (exclusive).
+	 */
+	private void blit(Pixels pixels, int x, int y, int top, int bottom) {
+		if (pixels == null) {
+			return;
+		}
+		int fromX = Math.max(x, 0);
+		int toX = Math.min(x + pixels.width, screenWidth);
+		int fromY = Math.max(y, top);
+		int toY = Math.min(y + pixels.height, bottom);
+		if (fromX >= toX || fromY >= toY) {
+			return;
+		}
+
+		int[] src = pixels.argb;
+		int[] dst = frame;
+		int width = toX - fromX;
+		for (int row = fromY; row < toY; row++) {
+			int srcIndex = (row - y) * pixels.width + (fromX - x);
+			int dstIndex = row * screenWidth + fromX;
+			if (pixels.opaque) {
+				System.arraycopy(src, srcIndex, dst, dstIndex, width);
+				continue;
+			}
+			for (int end = dstIndex + width; dstIndex < end; dstIndex++, srcIndex++) {
+				int argb = src[srcIndex];
+				int alpha = argb >>> 24;
+				if (alpha == 0xff) {
+					dst[dstIndex] = argb;
+				} else if (alpha != 0) {
+					dst[dstIndex] = blend(argb, alpha, dst[dstIndex]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Blends a translucent ARGB pixel over an opaque RGB pixel.
+	 */
+	private static int blend(int argb, int alpha, int rgb) {
+		int inverse = 0xff - alpha;
+		int r = mul8(alpha, (argb >> 16) & 0xff) + mul8(inverse, (rgb >> 16) & 0xff);
+		int g = mul8(alpha, (argb >> 8) & 0xff) + mul8(inverse, (rgb >> 8) & 0xff);
+		int b = mul8(alpha, argb & 0xff) + mul8(inverse, rgb & 0xff);
+		return 0xff000000 | (r << 16) | (g << 8) | b;
+	}
+
+	/**
+	 * Multiplies two 8-bit values as fractions of 255, rounded the same way
+	 * as Java2D's mul8table.
+	 */
+	private static int mul8(int a, int b) {
+		// a * b * 0x10101 is at most 2^32 - 2^23, so the unsigned shift is exact
+		return (a * b * 0x10101 + 0x800000) >>> 24;
+	}
+
+	/**
+	 * A task that draws one band of the frame.
+	 */
+	private class BandTask implements Callable<Object> {
+
+		int top;
+		int bottom;
+
+		public Object call() {
+			if (!stopped) {
+				drawBand(top, bottom);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * The ARGB pixels of an image.
+	 */
+	private static class Pixels {
+
+		final int width;
+		final int height;
+		final int[] argb;
+		final boolean opaque;
+
+		Pixels(Image image) {
+			width = image.getWidth(null);
+			height = image.getHeight(null);
+			BufferedImage copy = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g = copy.createGraphics();
+			g.setComposite(AlphaComposite.Src);
+			g.drawImage(image, 0, 0, null);
+			g.dispose();
+			argb = ((DataBufferInt) copy.getRaster().getDataBuffer()).getData();
+
+			boolean allOpaque = true;
+			for (int i = 0; i < argb.length && allOpaque; i++) {
+				allOpaque = (argb[i] >>> 24) == 0xff;
+			}
+			opaque = allOpaque;
+		}
+	}
+
+	private static class RendererThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "SoftwareRenderer-thread-" + threadNumber.getAndIncrement());
+			// don't keep the VM alive
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
+}
@@ -0,0 +1,173 @@
+package tilegame;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+
+import graphics.Sprite;
+import tilegame.sprites.Creature;
+import tilegame.sprites.Player;
+
+/**
+ * The SortAndSweep class finds the pairs of creatures of a map whose hitboxes
+ * overlap. The creatures are kept sorted by the left edge of their hitboxes,
+ * and each update sweeps the sorted list from left to right, only comparing
+ * a creature with the following ones that start before it ends. Creatures
+ * barely move between updates, so the list is sorted again with an insertion
+ * sort, which takes about one pass over an almost sorted list. Only the
+ * first sort of a map, of creatures in no particular order, is a merge
+ * sort.
+ * <p>
+ * The player isn't included, as it already checks its own collisions. Only
+ * living creatures are kept: a creature leaves the list once it starts
+ * dying, and never comes back.
+ */
+public class SortAndSweep {
+
+	private static final Comparator<Creature> LEFT_EDGE_ORDER = new Comparator<Creature>() {
+		public int compare(Creature c1, Creature c2) {
+			return Float.compare(c1.getX() + c1.getHitboxX(), c2.getX() + c2.getHitboxX());
+		}
+	};
+
+	private TileMap map;
+	private Creature[] creatures = new Creature[16];
+	private float[] lefts = new float[16];
+	private int size;
+
+	// the overlapping pairs found by the last update
+	private Creature[] firsts = new Creature[16];
+	private Creature[] seconds = new Creature[16];
+	private int pairCount;
+
+	/**
+	 * Finds the pairs of creatures of a map whose hitboxes overlap. The
+	 * creatures are collected again when the map changes.
+	 */
+	public void update(TileMap map) {
+		if (map != this.map) {
+			this.map = map;
+			collectCreatures();
+		}
+		removeDeadCreatures();
+		sort();
+		sweep();
+	}
+
+	/**
+	 * Gets the number of overlapping pairs found by the last update.
+	 */
+	public int getPairCount() {
+		return pairCount;
+	}
+
+	/**
+	 * Gets the left creature of an overlapping pair.
+	 */
+	public Creature getFirst(int pair) {
+		return firsts[pair];
+	}
+
+	/**
+	 * Gets the right creature of an overlapping pair.
+	 */
+	public Creature getSecond(int pair) {
+		return seconds[pair];
+	}
+
+	private void collectCreatures() {
+		for (int i = 0; i < size; i++) {
+			creatures[i] = null;
+		}
+		size = 0;
+		Iterator<Sprite> i = map.getSprites();
+		while (i.hasNext()) {
+			Sprite sprite = i.next();
+			if (sprite instanceof Creature && !(sprite instanceof Player)) {
+				if (size == creatures.length) {
+					Creature[] newCreatures = new Creature[size * 2];
+					System.arraycopy(creatures, 0, newCreatures, 0, size);
+					creatures = newCreatures;
+					lefts = new float[size * 2];
+				}
+				creatures[size++] = (Creature) sprite;
+			}
+		}
+		Arrays.sort(creatures, 0, size, LEFT_EDGE_ORDER);
+	}
+
+	private void removeDeadCreatures() {
+		int newSize = 0;
+		for (int i = 0; i < size; i++) {
+			if (creatures[i].isAlive()) {
+				creatures[newSize++] = creatures[i];
+			}
+		}
+		for (int i = newSize; i < size; i++) {
+			creatures[i] = null;
+		}
+		size = newSize;
+	}
+
+	/**
+	 * Sorts the creatures by the left edge of their hitboxes, with an
+	 * insertion sort.
+	 */
+	private void sort() {
+		for (int i = 0; i < size; i++) {
+			lefts[i] = creatures[i].getX() + creatures[i].getHitboxX();
+		}
+		for (int i = 1; i < size; i++) {
+			Creature creature = creatures[i];
+			float left = lefts[i];
+			int j = i - 1;
+			while (j >= 0 && lefts[j] > left) {
+				creatures[j + 1] = creatures[j];
+				lefts[j + 1] = lefts[j];
+				j--;
+			}
+			creatures[j + 1] = creature;
+			lefts[j + 1] = left;
+		}
+	}
+
+	/**
+	 * Sweeps the sorted creatures, comparing each one with the following
+	 * creatures that start before it ends.
+	 */
+	private void sweep() {
+		for (int i = 0; i < pairCount; i++) {
+			firsts[i] = null;
+			seconds[i] = null;
+		}
+		pairCount = 0;
+		for (int i = 0; i < size; i++) {
+			Creature first = creatures[i];
+			float right = lefts[i] + first.getHitboxWidth();
+			float top = first.getY() + first.getHitboxY();
+			float bottom = top + first.getHitboxHeight();
+			for (int j = i + 1; j < size && lefts[j] < right; j++) {
+				Creature second = creatures[j];
+				float secondTop = second.getY() + second.getHitboxY();
+				if (secondTop < bottom && top < secondTop + second.getHitboxHeight()) {
+					addPair(first, second);
+				}
+			}
+		}
+	}
+
+	private void addPair(Creature first, Creature second) {
+		if (pairCount == firsts.length) {
+			Creature[] newFirsts = new Creature[pairCount * 2];
+			Creature[] newSeconds = new Creature[pairCount * 2];
+			System.arraycopy(firsts, 0, newFirsts, 0, pairCount);
+			System.arraycopy(seconds, 0, newSeconds, 0, pairCount);
+			firsts = newFirsts;
+			seconds = newSeconds;
+		}
+		firsts[pairCount] = first;
+		seconds[pairCount] = second;
+		pairCount++;
+	}
+
+}
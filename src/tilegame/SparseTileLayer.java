@@ -0,0 +1,171 @@
+package tilegame;
+
+import java.awt.Image;
+
+/**
+ * The SparseTileLayer class holds a non-colliding tile layer (like background
+ * decoration or a foreground overlay) of a TileMap. Only the non-empty tiles
+ * are stored, in an open-addressing hash table keyed by the tile index, so a
+ * mostly empty layer costs memory proportional to its used tiles instead of
+ * the size of the map.
+ */
+public class SparseTileLayer {
+
+	private static final int EMPTY = -1;
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final int width;
+	private final int height;
+
+	private int[] keys;
+	private Image[] values;
+	private int size;
+	private int modCount;
+
+	/**
+	 * Creates a new, empty SparseTileLayer with the specified width and height
+	 * (in number of tiles).
+	 */
+	public SparseTileLayer(int width, int height) {
+		this.width = width;
+		this.height = height;
+		allocate(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Gets the width of this layer (number of tiles across).
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Gets the height of this layer (number of tiles down).
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Checks if this layer has no tiles at all.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Gets the number of non-empty tiles in this layer.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the number of times this layer has been changed. Renderers that
+	 * cache the layer use it to find out when to redraw.
+	 */
+	public int getModCount() {
+		return modCount;
+	}
+
+	/**
+	 * Gets the tile at the specified location. Returns null if no tile is at
+	 * the location or if the location is out of bounds.
+	 */
+	public Image getTile(int x, int y) {
+		if (size == 0 || x < 0 || x >= width || y < 0 || y >= height) {
+			return null;
+		}
+		int key = y * width + x;
+		int mask = keys.length - 1;
+		for (int i = hash(key) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return values[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Sets the tile at the specified location. A null tile removes any tile at
+	 * the location.
+	 */
+	public void setTile(int x, int y, Image tile) {
+		if (x < 0 || x >= width || y < 0 || y >= height) {
+			return;
+		}
+		int key = y * width + x;
+		modCount++;
+		if (tile == null) {
+			remove(key);
+			return;
+		}
+		// keep the load factor under 1/2
+		if ((size + 1) * 2 > keys.length) {
+			rehash(keys.length * 2);
+		}
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while (keys[i] != EMPTY) {
+			if (keys[i] == key) {
+				values[i] = tile;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = tile;
+		size++;
+	}
+
+	private void remove(int key) {
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		while (keys[i] != key) {
+			if (keys[i] == EMPTY) {
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = EMPTY;
+		values[i] = null;
+		size--;
+
+		// re-insert the rest of the cluster so lookups don't stop early
+		for (i = (i + 1) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+			int k = keys[i];
+			Image v = values[i];
+			keys[i] = EMPTY;
+			values[i] = null;
+			size--;
+			setTile(k % width, k / width, v);
+		}
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		Image[] oldValues = values;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				setTile(oldKeys[i] % width, oldKeys[i] / width, oldValues[i]);
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new int[capacity];
+		values = new Image[capacity];
+		size = 0;
+		for (int i = 0; i < capacity; i++) {
+			keys[i] = EMPTY;
+		}
+	}
+
+	private static int hash(int key) {
+		// spread the bits so neighbouring tiles don't cluster
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+}
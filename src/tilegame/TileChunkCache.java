@@ -0,0 +1,198 @@
+package tilegame;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import graphics.ScaledImageCache;
+import graphics.TextureAtlas;
+
+/**
+ * The TileChunkCache class pre-renders the static tiles of a TileMap (the
+ * decoration and solid layers) into chunk images of CHUNK_TILES x CHUNK_TILES
+ * tiles. A renderer then draws a handful of chunks per frame instead of one
+ * image per tile.
+ *
+ * <p>
+ * Only the most recently used chunks are kept. The cache is cleared when a
+ * different map is drawn or when a tile of the current map changes.
+ * <p>
+ * At a scale other than 1 the chunks are rendered from scaled tiles, so they
+ * are drawn at native size.
+ */
+public class TileChunkCache {
+
+	// Math.pow(2, CHUNK_TILES_BITS) == CHUNK_TILES
+	public static final int CHUNK_TILES_BITS = 3;
+	public static final int CHUNK_TILES = 1 << CHUNK_TILES_BITS;
+
+	private static final int DEFAULT_MAX_CHUNKS = 16;
+
+	private final LinkedHashMap<Integer, Image> chunks;
+	private int maxChunks;
+
+	private TextureAtlas atlas;
+	private ScaledImageCache scaledImages;
+	private TileMap map;
+	private int tileVersion;
+
+	/**
+	 * Creates a new TileChunkCache with the default maximum number of chunks.
+	 */
+	public TileChunkCache() {
+		this(DEFAULT_MAX_CHUNKS);
+	}
+
+	/**
+	 * Creates a new TileChunkCache that keeps at most maxChunks chunk images.
+	 */
+	public TileChunkCache(int maxChunks) {
+		this.maxChunks = maxChunks;
+		// access-ordered, so the eldest entry is the least recently used
+		chunks = new LinkedHashMap<Integer, Image>(maxChunks * 2, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Image> eldest) {
+				if (size() > TileChunkCache.this.maxChunks) {
+					flush(eldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Sets the TextureAtlas to draw the tiles from, and clears the cache.
+	 */
+	public void setAtlas(TextureAtlas atlas) {
+		this.atlas = atlas;
+		clear();
+	}
+
+	/**
+	 * Sets the scaled tiles to render the chunks from, and clears the cache.
+	 * If null, the chunks are rendered at scale 1.
+	 */
+	public void setScaledImages(ScaledImageCache scaledImages) {
+		this.scaledImages = scaledImages;
+		clear();
+	}
+
+	/**
+	 * Makes sure at least the specified number of chunks fit in the cache, so
+	 * the visible chunks never evict each other.
+	 */
+	public void ensureCapacity(int numChunks) {
+		maxChunks = Math.max(maxChunks, numChunks);
+	}
+
+	/**
+	 * Gets the width of the specified map in chunks.
+	 */
+	public static int getWidthInChunks(TileMap map) {
+		return (map.getWidth() + CHUNK_TILES - 1) >> CHUNK_TILES_BITS;
+	}
+
+	/**
+	 * Gets the height of the specified map in chunks.
+	 */
+	public static int getHeightInChunks(TileMap map) {
+		return (map.getHeight() + CHUNK_TILES - 1) >> CHUNK_TILES_BITS;
+	}
+
+	/**
+	 * Gets the chunk image at the specified chunk position, rendering it if
+	 * it isn't cached. Returns null if the chunk has no tiles.
+	 */
+	public Image getChunk(GraphicsConfiguration gc, TileMap map, int chunkX, int chunkY) {
+		if (this.map != map || tileVersion != map.getTileVersion()) {
+			clear();
+			this.map = map;
+			tileVersion = map.getTileVersion();
+		}
+
+		Integer key = chunkY * getWidthInChunks(map) + chunkX;
+		Image chunk = chunks.get(key);
+		if (chunk == null && !chunks.containsKey(key)) {
+			chunk = createChunk(gc, map, chunkX, chunkY);
+			chunks.put(key, chunk);
+		}
+		return chunk;
+	}
+
+	/**
+	 * Removes all chunks from this cache.
+	 */
+	public void clear() {
+		for (Image chunk : chunks.values()) {
+			flush(chunk);
+		}
+		chunks.clear();
+		map = null;
+	}
+
+	private Image createChunk(GraphicsConfiguration gc, TileMap map, int chunkX, int chunkY) {
+		int firstTileX = chunkX << CHUNK_TILES_BITS;
+		int firstTileY = chunkY << CHUNK_TILES_BITS;
+		int lastTileX = Math.min(firstTileX + CHUNK_TILES, map.getWidth()) - 1;
+		int lastTileY = Math.min(firstTileY + CHUNK_TILES, map.getHeight()) - 1;
+		SparseTileLayer decoration = map.getDecorationLayer();
+
+		Image chunk = null;
+		Graphics2D g = null;
+		for (int y = firstTileY; y <= lastTileY; y++) {
+			for (int x = firstTileX; x <= lastTileX; x++) {
+				Image decorationTile = decoration.getTile(x, y);
+				Image tile = map.getTile(x, y);
+				if (decorationTile == null && tile == null) {
+					continue;
+				}
+				// don't create an image for empty chunks
+				if (chunk == null) {
+					int size = scale(TileMapRenderer.tilesToPixels(CHUNK_TILES));
+					chunk = gc.createCompatibleImage(size, size, Transparency.TRANSLUCENT);
+					g = (Graphics2D) chunk.getGraphics();
+				}
+				int tileX = scale(TileMapRenderer.tilesToPixels(x - firstTileX));
+				int tileY = scale(TileMapRenderer.tilesToPixels(y - firstTileY));
+				if (decorationTile != null) {
+					drawTile(g, decorationTile, tileX, tileY);
+				}
+				if (tile != null) {
+					drawTile(g, tile, tileX, tileY);
+				}
+			}
+		}
+		if (g != null) {
+			g.dispose();
+		}
+		return chunk;
+	}
+
+	private void drawTile(Graphics2D g, Image tile, int x, int y) {
+		TextureAtlas.Region region = atlas != null ? atlas.getRegion(tile) : null;
+		if (region != null) {
+			region.draw(g, x, y);
+		} else if (scaledImages != null) {
+			g.drawImage(scaledImages.get(tile), x, y, null);
+		} else {
+			g.drawImage(tile, x, y, null);
+		}
+	}
+
+	private int scale(int pixels) {
+		return scaledImages != null ? scaledImages.scale(pixels) : pixels;
+	}
+
+	private static void flush(Image chunk) {
+		if (chunk != null) {
+			chunk.flush();
+		}
+	}
+
+}
@@ -11,12 +11,21 @@ import graphics.Sprite;
  * The TileMap class contains the data for a tile-based map, including Sprites.
  * Each tile is a reference to an Image. Of course, Images are used multiple
  * times in the tile map.
+ * 
+ * <p>
+ * A TileMap has three tile layers: a sparse decoration layer drawn behind
+ * everything, the dense solid layer that Sprites collide with, and a sparse
+ * foreground layer drawn over the Sprites. Only the solid layer is used for
+ * collision detection.
  */
 public class TileMap {
 
 	private Image[][] tiles;
+	private SparseTileLayer decoration;
+	private SparseTileLayer foreground;
 	private List<Sprite> sprites;
 	private Sprite player;
+	private int modCount;
 
 	/**
 	 * Creates a new TileMap with the specified width and height (in number of
@@ -24,6 +33,8 @@ public class TileMap {
 	 */
 	public TileMap(int width, int height) {
 		tiles = new Image[width][height];
+		decoration = new SparseTileLayer(width, height);
+		foreground = new SparseTileLayer(width, height);
 		sprites = new LinkedList<Sprite>();
 	}
 
@@ -42,8 +53,8 @@ public class TileMap {
 	}
 
 	/**
-	 * Gets the tile at the specified location. Returns null if no tile is at
-	 * the location or if the location is out of bounds.
+	 * Gets the solid tile at the specified location. Returns null if no tile is
+	 * at the location or if the location is out of bounds.
 	 */
 	public Image getTile(int x, int y) {
 		if (x < 0 || x >= getWidth() || y < 0 || y >= getHeight()) {
@@ -54,10 +65,33 @@ public class TileMap {
 	}
 
 	/**
-	 * Sets the tile at the specified location.
+	 * Sets the solid tile at the specified location.
 	 */
 	public void setTile(int x, int y, Image tile) {
 		tiles[x][y] = tile;
+		modCount++;
+	}
+
+	/**
+	 * Gets a number that changes whenever a solid or decoration tile changes.
+	 * Renderers that cache the static tiles use it to find out when to redraw.
+	 */
+	public int getTileVersion() {
+		return modCount + decoration.getModCount();
+	}
+
+	/**
+	 * Gets the decoration layer, drawn behind the solid tiles and Sprites.
+	 */
+	public SparseTileLayer getDecorationLayer() {
+		return decoration;
+	}
+
+	/**
+	 * Gets the foreground layer, drawn over the solid tiles and Sprites.
+	 */
+	public SparseTileLayer getForegroundLayer() {
+		return foreground;
 	}
 
 	/**
@@ -96,4 +130,11 @@ public class TileMap {
 		return sprites.iterator();
 	}
 
+	/**
+	 * Gets the number of Sprites in this map, excluding the player Sprite.
+	 */
+	public int getSpriteCount() {
+		return sprites.size();
+	}
+
 }
@@ -2,29 +2,45 @@ package tilegame;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
+import graphics.FixedPoint;
+import graphics.ScaledImageCache;
 import graphics.ScreenManager;
 import graphics.Sprite;
+import graphics.TextureAtlas;
 import tilegame.sprites.Creature;
 
 /**
  * The TileMapRenderer class draws a TileMap on the screen. It draws all tiles,
  * sprites, and an optional background image centered around the position of the
- * player.
+ * player. The decoration layer is drawn behind the sprites and the foreground
+ * layer over them.
+ * 
+ * <p>
+ * The decoration and solid tiles are static, so they are pre-rendered into
+ * chunks by a TileChunkCache and only the chunks on screen are drawn. The
+ * sprites are drawn through a RenderQueue, batched by atlas page.
  * 
  * <p>
  * If the width of background image is smaller the width of the tile map, the
  * background image will appear to move slowly, creating a parallax background
- * effect.
+ * effect. Several background layers can be stacked, see ParallaxLayer.
  * 
  * <p>
  * Also, three static methods are provided to convert pixels to tile positions,
  * and vice-versa.
  * 
  * <p>
- * This TileMapRender uses a tile size of 64.
+ * This TileMapRender uses a tile size of 64. The map can be drawn at another
+ * scale: the map is laid out in logical pixels as usual, and only the final
+ * positions are scaled, with pre-scaled images drawn at native size.
  */
 public class TileMapRenderer {
 
@@ -33,7 +49,39 @@ public class TileMapRenderer {
 	// Math.pow(2, TILE_SIZE_BITS) == TILE_SIZE
 	private static final int TILE_SIZE_BITS = (int)(Math.log(TILE_SIZE)/Math.log(2));
 	
-	private Image background;
+	// sprite layers, drawn in this order
+	static final int LAYER_PLAYER = 0;
+	static final int LAYER_SPRITES = 1;
+	
+	private final List<ParallaxLayer> backgroundLayers = new ArrayList<ParallaxLayer>();
+	private TextureAtlas atlas;
+	private ScaledImageCache scaledImages;
+	private float scale = 1;
+	private final TileChunkCache chunkCache = new TileChunkCache();
+	private final RenderQueue renderQueue = new RenderQueue();
+	
+	// state of the dirty rectangle mode
+	private boolean dirtyRectangleMode;
+	private final DirtyRectangleTracker dirtyTracker = new DirtyRectangleTracker();
+	private BufferedImage frame;
+	private TileMap frameMap;
+	private int frameTileVersion;
+	private int frameOffsetX;
+	private int frameOffsetY;
+	private int[] frameBackgroundXs = new int[0];
+	private final Rectangle clip = new Rectangle();
+	
+	// statistics of the last frame drawn. the tiles on screen are only
+	// counted when asked for, from the view of the last frame
+	private int tilesDrawn;
+	private TileMap lastMap;
+	private int lastScreenWidth;
+	private int lastScreenHeight;
+	private int lastOffsetX;
+	private int lastOffsetY;
+	private int spritesDrawn;
+	private long tileTime;
+	private long spriteTime;
 
 	/**
 	 * Converts a pixel position to a tile position.
@@ -54,6 +102,13 @@ public class TileMapRenderer {
 		// return (int)Math.floor((float)pixels / TILE_SIZE);
 	}
 
+	/**
+	 * Converts a 16.16 fixed-point pixel position to a tile position.
+	 */
+	public static int fixedToTiles(int fixedPixels) {
+		return fixedPixels >> (FixedPoint.FRACTION_BITS + TILE_SIZE_BITS);
+	}
+
 	/**
 	 * Converts a tile position to a pixel position.
 	 */
@@ -67,88 +122,408 @@ public class TileMapRenderer {
 	}
 
 	/**
-	 * Sets the background to draw.
+	 * Sets the background to draw, replacing any background layers.
 	 */
 	public void withBackground(Image background) {
-		this.background = background;
+		backgroundLayers.clear();
+		if (background != null) {
+			addBackgroundLayer(background);
+		}
+	}
+
+	/**
+	 * Adds a parallax background layer, drawn over the layers added before.
+	 */
+	public void addBackgroundLayer(Image image) {
+		if (scaledImages != null) {
+			backgroundLayers.add(new ParallaxLayer(image, scaledImages.get(image), scale));
+		} else {
+			backgroundLayers.add(new ParallaxLayer(image));
+		}
+	}
+
+	/**
+	 * Sets the pre-scaled images to draw with, and the scale to draw at. The
+	 * atlas, if any, should hold images of the same scale. If null, the map is
+	 * drawn at scale 1.
+	 * <p>
+	 * Scales that make the tile size a whole number of pixels, like multiples
+	 * of 1/4, keep the tiles seamless.
+	 */
+	public void setScaledImages(ScaledImageCache scaledImages) {
+		this.scaledImages = scaledImages;
+		this.scale = scaledImages != null ? scaledImages.getScale() : 1;
+		chunkCache.setScaledImages(scaledImages);
+		
+		// slice the background layers again at the new scale
+		List<ParallaxLayer> layers = new ArrayList<ParallaxLayer>(backgroundLayers);
+		backgroundLayers.clear();
+		for (ParallaxLayer layer : layers) {
+			addBackgroundLayer(layer.getImage());
+		}
+		frameMap = null;
+	}
+
+	/**
+	 * Gets the scale the map is drawn at.
+	 */
+	public float getScale() {
+		return scale;
+	}
+
+	/**
+	 * Sets the TextureAtlas to draw tiles and sprites from. Images that aren't
+	 * packed in the atlas are drawn directly.
+	 */
+	public void setAtlas(TextureAtlas atlas) {
+		this.atlas = atlas;
+		chunkCache.setAtlas(atlas);
+		renderQueue.setAtlas(atlas);
+	}
+
+	/**
+	 * Turns the dirty rectangle mode on or off. In this mode the map is drawn
+	 * into a frame image kept between frames, and only the regions touched by
+	 * changed Sprites or by scrolling are repainted. That makes frames where
+	 * little moves (like a paused game) cost about one image copy.
+	 */
+	public void setDirtyRectangleMode(boolean dirtyRectangleMode) {
+		this.dirtyRectangleMode = dirtyRectangleMode;
+		if (!dirtyRectangleMode && frame != null) {
+			frame.flush();
+		}
+		frame = null;
+		frameMap = null;
+	}
+
+	/**
+	 * Checks if the dirty rectangle mode is on.
+	 */
+	public boolean isDirtyRectangleMode() {
+		return dirtyRectangleMode;
 	}
 
 	/**
 	 * Draws the specified TileMap.
 	 */
 	public void draw(Graphics2D g, TileMap map, ScreenManager screen) {
-		Sprite player = map.getPlayer();
-		int mapWidth = tilesToPixels(map.getWidth());
-		int mapHeight = tilesToPixels(map.getHeight());
+		draw(g, map, screen.getWidth(), screen.getHeight());
+	}
 
-		int screenWidth = screen.getWidth();
-		int screenHeight = screen.getHeight();
+	/**
+	 * Draws the specified TileMap on a screen of the specified size. The
+	 * Graphics2D can be of any target, like an offscreen BufferedImage, so
+	 * this works without a display too.
+	 */
+	public void draw(Graphics2D g, TileMap map, int screenWidth, int screenHeight) {
+		int mapWidth = tilesToPixels(map.getWidth());
+		
+		// lay out the map on a screen of logical pixels
+		if (scale != 1) {
+			screenWidth = (int) Math.ceil(screenWidth / scale);
+			screenHeight = (int) Math.ceil(screenHeight / scale);
+		}
 		
 		// get the scrolling position of the map based on player's position
+		int offsetX = getOffsetX(map, screenWidth);
+		int offsetY = getOffsetY(map, screenHeight);
+
+		tileTime = 0;
+		spriteTime = 0;
+		long startTime = System.nanoTime();
+		if (dirtyRectangleMode) {
+			dirtyTracker.beginFrame(screenWidth, screenHeight);
+		}
+		queueSprites(map, screenWidth, screenHeight, offsetX, offsetY);
+		spriteTime += System.nanoTime() - startTime;
+		
+		if (dirtyRectangleMode) {
+			drawDirtyRegions(g, map, mapWidth, screenWidth, screenHeight, offsetX, offsetY);
+		} else {
+			drawScene(g, map, mapWidth, screenWidth, screenHeight, offsetX, offsetY);
+		}
+		tilesDrawn = -1;
+		lastMap = map;
+		lastScreenWidth = screenWidth;
+		lastScreenHeight = screenHeight;
+		lastOffsetX = offsetX;
+		lastOffsetY = offsetY;
+		spritesDrawn = renderQueue.size();
+	}
+
+	/**
+	 * Gets the number of tiles on screen in the last frame drawn. The tiles
+	 * are counted the first time this is called after a frame, so frames
+	 * nobody asks about don't pay for it.
+	 */
+	public int getTilesDrawn() {
+		if (tilesDrawn < 0) {
+			tilesDrawn = (lastMap == null) ? 0
+					: countVisibleTiles(lastMap, lastScreenWidth, lastScreenHeight, lastOffsetX, lastOffsetY);
+		}
+		return tilesDrawn;
+	}
+
+	/**
+	 * Gets the number of Sprites drawn in the last frame, the player included.
+	 */
+	public int getSpritesDrawn() {
+		return spritesDrawn;
+	}
+
+	/**
+	 * Gets the time spent drawing the tiles of all layers in the last frame,
+	 * in nanoseconds.
+	 */
+	public long getTileTime() {
+		return tileTime;
+	}
+
+	/**
+	 * Gets the time spent sorting and drawing the Sprites in the last frame,
+	 * in nanoseconds.
+	 */
+	public long getSpriteTime() {
+		return spriteTime;
+	}
+	
+	/**
+	 * Gets the x offset to draw all sprites and tiles, which keeps the player
+	 * centered without scrolling past the edges of the map.
+	 */
+	static int getOffsetX(TileMap map, int screenWidth) {
+		Sprite player = map.getPlayer();
 		int offsetX = screenWidth / 2 - Math.round(player.getX()) - TILE_SIZE;
 		offsetX = Math.min(offsetX, 0);
-		offsetX = Math.max(offsetX, screenWidth - mapWidth);
-
-		// get the y offset to draw all sprites and tiles
+		return Math.max(offsetX, screenWidth - tilesToPixels(map.getWidth()));
+	}
+	
+	/**
+	 * Gets the y offset to draw all sprites and tiles.
+	 */
+	static int getOffsetY(TileMap map, int screenHeight) {
+		Sprite player = map.getPlayer();
 		int offsetY = screenHeight / 2 - Math.round(player.getY()) - player.getHeight();
 		offsetY = Math.min(offsetY, 0);
-		offsetY = Math.max(offsetY, screenHeight - mapHeight);
+		return Math.max(offsetY, screenHeight - tilesToPixels(map.getHeight()));
+	}
+	
+	/**
+	 * Checks if a Sprite at the specified (rounded) position is on screen.
+	 */
+	static boolean isOnScreen(Sprite sprite, int spriteX, int spriteY, int screenWidth, int screenHeight, 
+			int offsetX, int offsetY) {
+		int firstTileX = pixelsToTiles(-offsetX);
+		int lastTileX = firstTileX + pixelsToTiles(screenWidth) + 1;
+		int firstTileY = pixelsToTiles(-offsetY);
+		int lastTileY = firstTileY + pixelsToTiles(screenHeight) + 1;
+		return firstTileX <= pixelsToTiles(spriteX + sprite.getWidth()) && lastTileX > pixelsToTiles(spriteX)
+				&& firstTileY <= pixelsToTiles(spriteY + sprite.getHeight()) && lastTileY > pixelsToTiles(spriteY);
+	}
+	
+	/**
+	 * Draws the map into the frame image, repainting only the regions that
+	 * changed since the last frame, then draws the frame image.
+	 */
+	private void drawDirtyRegions(Graphics2D g, TileMap map, int mapWidth, int screenWidth, int screenHeight, 
+			int offsetX, int offsetY) {
+		
+		boolean redrawAll = false;
+		if (frame == null || frame.getWidth() != toScreen(screenWidth) || frame.getHeight() != toScreen(screenHeight)) {
+			if (frame != null) {
+				frame.flush();
+			}
+			frame = g.getDeviceConfiguration().createCompatibleImage(toScreen(screenWidth), toScreen(screenHeight));
+			redrawAll = true;
+		} else if (map != frameMap || map.getTileVersion() != frameTileVersion) {
+			redrawAll = true;
+		}
+		
+		Graphics2D frameGraphics = frame.createGraphics();
+		int dx = offsetX - frameOffsetX;
+		int dy = offsetY - frameOffsetY;
+		if (!redrawAll && (dx != 0 || dy != 0)) {
+			// scroll the unchanged part of the frame, unless the parallax
+			// background moved differently than the tiles, or the scaled
+			// scrolling distance isn't a whole number of pixels
+			if (!isBackgroundScrolledBy(dx, dy, mapWidth, screenWidth, offsetX)
+					|| Math.abs(dx) >= screenWidth || Math.abs(dy) >= screenHeight
+					|| dx * scale != toScreen(dx) || dy * scale != toScreen(dy)) {
+				redrawAll = true;
+			} else {
+				frameGraphics.copyArea(0, 0, frame.getWidth(), frame.getHeight(), toScreen(dx), toScreen(dy));
+				dirtyTracker.add(dx > 0 ? 0 : screenWidth + dx, 0, Math.abs(dx), screenHeight);
+				dirtyTracker.add(0, dy > 0 ? 0 : screenHeight + dy, screenWidth, Math.abs(dy));
+			}
+		}
+		if (redrawAll) {
+			dirtyTracker.addScreen();
+		} else {
+			dirtyTracker.addChangedSprites(offsetX, offsetY);
+		}
+		
+		// repaint the dirty regions
+		for (int i = 0; i < dirtyTracker.getDirtyCount(); i++) {
+			frameGraphics.setClip(toScreen(dirtyTracker.getDirty(i)));
+			drawScene(frameGraphics, map, mapWidth, screenWidth, screenHeight, offsetX, offsetY);
+		}
+		frameGraphics.dispose();
+		
+		frameMap = map;
+		frameTileVersion = map.getTileVersion();
+		frameOffsetX = offsetX;
+		frameOffsetY = offsetY;
+		if (frameBackgroundXs.length != backgroundLayers.size()) {
+			frameBackgroundXs = new int[backgroundLayers.size()];
+		}
+		for (int i = 0; i < frameBackgroundXs.length; i++) {
+			frameBackgroundXs[i] = ParallaxLayer.getX(backgroundLayers.get(i).getWidth(), mapWidth, screenWidth, offsetX);
+		}
+		
+		g.drawImage(frame, 0, 0, null);
+	}
+	
+	/**
+	 * Draws the background, the tiles, the queued Sprites and the foreground,
+	 * adding up the time spent on tiles and on Sprites.
+	 */
+	private void drawScene(Graphics2D g, TileMap map, int mapWidth, int screenWidth, int screenHeight, 
+			int offsetX, int offsetY) {
 		
-//		System.out.println("player.getX():"+player.getX()+",map.getWidth():"+map.getWidth()+",mapWidth:"+mapWidth+",map.getHeight():"
-//				+map.getHeight()+",mapHeight:"+mapHeight+",screenWidth:"+screenWidth+",screenHeight:"+screenHeight+",offsetX:"+offsetX+",offsetY:"+offsetY);
-
 		drawBackground(g, mapWidth, screenWidth, screenHeight, offsetX);
+		long startTime = System.nanoTime();
 		drawVisibleTiles(g, map, screenWidth, screenHeight, offsetX, offsetY);
-		drawPlayer(g, player, offsetX, offsetY);
-		drawOtherSprites(g, map, screenWidth, screenHeight, offsetX, offsetY);
+		long tilesTime = System.nanoTime();
+		drawQueuedSprites(g, offsetX, offsetY);
+		long spritesTime = System.nanoTime();
+		drawVisibleLayer(g, map.getForegroundLayer(), screenWidth, screenHeight, offsetX, offsetY);
+		long endTime = System.nanoTime();
+		tileTime += (tilesTime - startTime) + (endTime - spritesTime);
+		spriteTime += spritesTime - tilesTime;
+	}
+	
+	/**
+	 * Checks if all the background layers moved by the same amount as the map
+	 * since the last frame in dirty rectangle mode.
+	 */
+	private boolean isBackgroundScrolledBy(int dx, int dy, int mapWidth, int screenWidth, int offsetX) {
+		if (backgroundLayers.isEmpty()) {
+			return true;
+		}
+		// the layers are aligned with the bottom of the screen
+		if (dy != 0 || frameBackgroundXs.length != backgroundLayers.size()) {
+			return false;
+		}
+		for (int i = 0; i < frameBackgroundXs.length; i++) {
+			int x = ParallaxLayer.getX(backgroundLayers.get(i).getWidth(), mapWidth, screenWidth, offsetX);
+			if (x - frameBackgroundXs[i] != dx) {
+				return false;
+			}
+		}
+		return true;
 	}
 	
 	private void drawBackground(Graphics2D g, int mapWidth, int screenWidth, int screenHeight, int offsetX) {
 		// draw black background, if needed
-		if (background == null || screenHeight > background.getHeight(null)) {
+		if (backgroundLayers.isEmpty() || !backgroundLayers.get(0).isOpaque()
+				|| screenHeight > backgroundLayers.get(0).getHeight()) {
 			g.setColor(Color.black);
-			g.fillRect(0, 0, screenWidth, screenHeight);
+			g.fillRect(0, 0, toScreen(screenWidth), toScreen(screenHeight));
 		}
 
-		// draw parallax background image
-		if (background != null) {
-			// 该backgroundX公式 = offsetX * 背景 / 地图，相当于做了个比例映射
-			int backgroundX = offsetX * (screenWidth - background.getWidth(null)) / (screenWidth - mapWidth);
-			int backgroundY = screenHeight - background.getHeight(null);
-
-			g.drawImage(background, backgroundX, backgroundY, null);
+		// draw parallax background layers
+		for (int i = 0; i < backgroundLayers.size(); i++) {
+			backgroundLayers.get(i).draw(g, mapWidth, screenWidth, screenHeight, offsetX);
 		}
 	}
 	
 	private void drawVisibleTiles(Graphics2D g, TileMap map, int screenWidth, int screenHeight, 
 			int offsetX, int offsetY) {
 		
-		// draw the visible tiles
-		int firstTileX = pixelsToTiles(-offsetX);
-		int lastTileX = firstTileX + pixelsToTiles(screenWidth) + 1;
-		for (int y = 0; y < screenHeight; y++) {
-			for (int x = firstTileX; x <= lastTileX; x++) {
-				Image image = map.getTile(x, y);
-				if (image != null) {
-					g.drawImage(image, tilesToPixels(x) + offsetX, tilesToPixels(y) + offsetY, null);
+		// draw the visible chunks of pre-rendered static tiles
+		int firstChunkX = Math.max(pixelsToChunks(-offsetX), 0);
+		int lastChunkX = Math.min(pixelsToChunks(screenWidth - offsetX - 1), TileChunkCache.getWidthInChunks(map) - 1);
+		int firstChunkY = Math.max(pixelsToChunks(-offsetY), 0);
+		int lastChunkY = Math.min(pixelsToChunks(screenHeight - offsetY - 1), TileChunkCache.getHeightInChunks(map) - 1);
+		chunkCache.ensureCapacity(2 * (lastChunkX - firstChunkX + 1) * (lastChunkY - firstChunkY + 1));
+		
+		GraphicsConfiguration gc = g.getDeviceConfiguration();
+		for (int y = firstChunkY; y <= lastChunkY; y++) {
+			for (int x = firstChunkX; x <= lastChunkX; x++) {
+				Image chunk = chunkCache.getChunk(gc, map, x, y);
+				if (chunk != null) {
+					g.drawImage(chunk, toScreen(chunksToPixels(x) + offsetX), toScreen(chunksToPixels(y) + offsetY), null);
 				}
 			}
 		}
 	}
 	
-	private void drawPlayer(Graphics2D g, Sprite player, int offsetX, int offsetY) {
-		// draw player
-		g.drawImage(player.getImage(), Math.round(player.getX()) + offsetX, Math.round(player.getY()) + offsetY, null);
+	private static int pixelsToChunks(int pixels) {
+		return pixels >> (TILE_SIZE_BITS + TileChunkCache.CHUNK_TILES_BITS);
+	}
+	
+	private static int chunksToPixels(int numChunks) {
+		return numChunks << (TILE_SIZE_BITS + TileChunkCache.CHUNK_TILES_BITS);
 	}
 	
-	private void drawOtherSprites(Graphics2D g, TileMap map, int screenWidth, int screenHeight, 
+	private void drawVisibleLayer(Graphics2D g, SparseTileLayer layer, int screenWidth, int screenHeight, 
 			int offsetX, int offsetY) {
 		
-		// draw sprites
+		if (layer.isEmpty()) {
+			return;
+		}
+		
+		// draw the visible tiles of a sparse layer
 		int firstTileX = pixelsToTiles(-offsetX);
-		int lastTileX = firstTileX + pixelsToTiles(screenWidth) + 1;
+		int lastTileX = pixelsToTiles(screenWidth - offsetX - 1);
 		int firstTileY = pixelsToTiles(-offsetY);
-		int lastTileY = firstTileY + pixelsToTiles(screenHeight) + 1;
+		int lastTileY = pixelsToTiles(screenHeight - offsetY - 1);
+		for (int y = firstTileY; y <= lastTileY; y++) {
+			for (int x = firstTileX; x <= lastTileX; x++) {
+				Image image = layer.getTile(x, y);
+				if (image != null) {
+					drawImage(g, image, tilesToPixels(x) + offsetX, tilesToPixels(y) + offsetY);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Counts the tiles of all layers that are on screen.
+	 */
+	private static int countVisibleTiles(TileMap map, int screenWidth, int screenHeight, int offsetX, int offsetY) {
+		int firstTileX = Math.max(pixelsToTiles(-offsetX), 0);
+		int lastTileX = Math.min(pixelsToTiles(screenWidth - offsetX - 1), map.getWidth() - 1);
+		int firstTileY = Math.max(pixelsToTiles(-offsetY), 0);
+		int lastTileY = Math.min(pixelsToTiles(screenHeight - offsetY - 1), map.getHeight() - 1);
+		SparseTileLayer decoration = map.getDecorationLayer();
+		SparseTileLayer foreground = map.getForegroundLayer();
+		int count = 0;
+		for (int y = firstTileY; y <= lastTileY; y++) {
+			for (int x = firstTileX; x <= lastTileX; x++) {
+				if (map.getTile(x, y) != null) {
+					count++;
+				}
+				if (!decoration.isEmpty() && decoration.getTile(x, y) != null) {
+					count++;
+				}
+				if (!foreground.isEmpty() && foreground.getTile(x, y) != null) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Queues the player and the Sprites on screen to be drawn, sorted by layer
+	 * and image. In dirty rectangle mode they are recorded as well.
+	 */
+	private void queueSprites(TileMap map, int screenWidth, int screenHeight, int offsetX, int offsetY) {
+		renderQueue.clear();
+		Sprite player = map.getPlayer();
+		queueSprite(LAYER_PLAYER, player, Math.round(player.getX()), Math.round(player.getY()));
+		
 		Iterator<Sprite> i = map.getSprites();
 		while (i.hasNext()) {
 			Sprite sprite = i.next();
@@ -156,17 +531,71 @@ public class TileMapRenderer {
 			int spriteY = Math.round(sprite.getY());
 			
 			//don't draw the sprite which it's not on screen
-			if (firstTileX > pixelsToTiles(spriteX + sprite.getWidth()) || lastTileX <= pixelsToTiles(spriteX)
-					|| firstTileY > pixelsToTiles(spriteY + sprite.getHeight()) || lastTileY <= pixelsToTiles(spriteY)) {
+			if (!isOnScreen(sprite, spriteX, spriteY, screenWidth, screenHeight, offsetX, offsetY)) {
 				continue;
 			}
 			
-			g.drawImage(sprite.getImage(), spriteX + offsetX, spriteY + offsetY, null);
+			queueSprite(LAYER_SPRITES, sprite, spriteX, spriteY);
 			// wake up the creature when it's on screen
 			if (sprite instanceof Creature) {
 				((Creature) sprite).wakeUp();
 			}
 		}
+		renderQueue.sort();
+	}
+	
+	private void queueSprite(int layer, Sprite sprite, int x, int y) {
+		Image image = sprite.getImage();
+		renderQueue.add(layer, image, x, y);
+		if (dirtyRectangleMode) {
+			dirtyTracker.record(sprite, image, x, y);
+		}
+	}
+	
+	private void drawQueuedSprites(Graphics2D g, int offsetX, int offsetY) {
+		for (int i = 0; i < renderQueue.size(); i++) {
+			drawImage(g, renderQueue.getImage(i), renderQueue.getX(i) + offsetX, renderQueue.getY(i) + offsetY);
+		}
+	}
+	
+	/**
+	 * Draws an image at a position in logical pixels, from the atlas if it's
+	 * packed there.
+	 */
+	private void drawImage(Graphics2D g, Image image, int x, int y) {
+		x = toScreen(x);
+		y = toScreen(y);
+		TextureAtlas.Region region = atlas != null ? atlas.getRegion(image) : null;
+		if (region != null) {
+			region.draw(g, x, y);
+		} else if (scaledImages != null) {
+			g.drawImage(scaledImages.get(image), x, y, null);
+		} else {
+			g.drawImage(image, x, y, null);
+		}
+	}
+	
+	/**
+	 * Converts a position or size in logical pixels to screen pixels.
+	 */
+	private int toScreen(int pixels) {
+		return scale == 1 ? pixels : Math.round(pixels * scale);
+	}
+	
+	/**
+	 * Converts a rectangle in logical pixels to the screen pixels it covers.
+	 */
+	private Rectangle toScreen(Rectangle rect) {
+		if (scale == 1) {
+			return rect;
+		}
+		// one more pixel around, for the rounding of the scaled images
+		int x1 = (int) Math.floor(rect.x * scale) - 1;
+		int y1 = (int) Math.floor(rect.y * scale) - 1;
+		int x2 = (int) Math.ceil((rect.x + rect.width) * scale) + 1;
+		int y2 = (int) Math.ceil((rect.y + rect.height) * scale) + 1;
+		clip.setBounds(x1, y1, x2 - x1, y2 - y1);
+		return clip;
 	}
 
 }
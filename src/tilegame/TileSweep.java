@@ -0,0 +1,215 @@
+package tilegame;
+
+import java.awt.Point;
+
+import graphics.FixedPoint;
+
+/**
+ * The TileSweep class finds the first solid tile a moving box hits, and when
+ * it hits it. The box is swept along its motion: the tile grid is walked
+ * with a DDA, one column or row at a time in the order the leading edges of
+ * the box cross into them, so the cost grows with the number of cells
+ * crossed, and a fast box can't skip over a tile.
+ * <p>
+ * Only the solid layer of the map is checked. Columns left and right of the
+ * map are solid, and rows above and below it are empty. Tiles the box
+ * already overlaps before moving don't stop it.
+ * <p>
+ * The sweeps along one axis take 16.16 fixed-point positions, and find the
+ * cells with shifts only, so they give the same results on every platform.
+ * <p>
+ * The results of the last sweep are kept in the TileSweep, so a sweep
+ * doesn't allocate anything.
+ */
+public class TileSweep {
+
+	private final Point tile = new Point();
+	private float time;
+	private boolean horizontal;
+
+	/**
+	 * Sweeps a box with its top-left corner at (x, y) by (dx, dy) pixels.
+	 * Returns true if it hits a solid tile, in which case getTile(),
+	 * getTime() and isHorizontal() tell which tile it hits, and when.
+	 */
+	public boolean sweep(TileMap map, float x, float y, int width, int height, float dx, float dy) {
+		int tileSize = TileMapRenderer.tilesToPixels(1);
+
+		// the next column and row the leading edges cross into, and when
+		int stepX = (dx > 0) ? 1 : -1;
+		int stepY = (dy > 0) ? 1 : -1;
+		int nextColumn = (dx > 0) ? ceil((x + width) / tileSize) : floor(x / tileSize) - 1;
+		int nextRow = (dy > 0) ? ceil((y + height) / tileSize) : floor(y / tileSize) - 1;
+		float nextTimeX = getCrossingTime(x, width, dx, nextColumn, tileSize);
+		float nextTimeY = getCrossingTime(y, height, dy, nextRow, tileSize);
+
+		// a box that only reaches a boundary at the end of the motion is
+		// stopped right at it, not in the next cell
+		while (nextTimeX < 1 || nextTimeY < 1) {
+			if (nextTimeX <= nextTimeY) {
+				// the box enters a column: check the rows it covers, and the
+				// row it enters at the same time, if any
+				float t = nextTimeX;
+				float top = y + dy * t;
+				int fromRow = floor(top / tileSize);
+				int toRow = ceil((top + height) / tileSize) - 1;
+				if (nextTimeY == t) {
+					fromRow = Math.min(fromRow, nextRow);
+					toRow = Math.max(toRow, nextRow);
+				}
+				if (findSolidTile(map, nextColumn, nextColumn, fromRow, toRow)) {
+					time = t;
+					horizontal = true;
+					return true;
+				}
+				nextColumn += stepX;
+				nextTimeX = getCrossingTime(x, width, dx, nextColumn, tileSize);
+			} else {
+				// the box enters a row: check the columns it covers
+				float t = nextTimeY;
+				float left = x + dx * t;
+				int fromColumn = floor(left / tileSize);
+				int toColumn = ceil((left + width) / tileSize) - 1;
+				if (findSolidTile(map, fromColumn, toColumn, nextRow, nextRow)) {
+					time = t;
+					horizontal = false;
+					return true;
+				}
+				nextRow += stepY;
+				nextTimeY = getCrossingTime(y, height, dy, nextRow, tileSize);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Sweeps a box with its top-left corner at (x, y) by dx horizontally, with
+	 * the positions in 16.16 fixed-point, and the size in pixels. Returns true
+	 * if it hits a solid tile, like sweep(), but only int math is used, so
+	 * getTime() isn't set.
+	 */
+	public boolean sweepFixedX(TileMap map, int x, int y, int width, int height, int dx) {
+		int right = x + FixedPoint.toFixed(width);
+		int fromRow = TileMapRenderer.fixedToTiles(y);
+		int toRow = TileMapRenderer.fixedToTiles(y + FixedPoint.toFixed(height) - 1);
+		if (dx > 0) {
+			// the columns the right edge crosses into, up to the one it
+			// ends in, unless it ends right at its boundary
+			int lastColumn = TileMapRenderer.fixedToTiles(right + dx - 1);
+			for (int column = TileMapRenderer.fixedToTiles(right - 1) + 1; column <= lastColumn; column++) {
+				if (findSolidTile(map, column, column, fromRow, toRow)) {
+					return hitFixed(true);
+				}
+			}
+		} else if (dx < 0) {
+			int lastColumn = TileMapRenderer.fixedToTiles(x + dx);
+			for (int column = TileMapRenderer.fixedToTiles(x) - 1; column >= lastColumn; column--) {
+				if (findSolidTile(map, column, column, fromRow, toRow)) {
+					return hitFixed(true);
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Sweeps a box with its top-left corner at (x, y) by dy vertically, with
+	 * the positions in 16.16 fixed-point, and the size in pixels. Returns true
+	 * if it hits a solid tile, like sweep(), but only int math is used, so
+	 * getTime() isn't set.
+	 */
+	public boolean sweepFixedY(TileMap map, int x, int y, int width, int height, int dy) {
+		int bottom = y + FixedPoint.toFixed(height);
+		int fromColumn = TileMapRenderer.fixedToTiles(x);
+		int toColumn = TileMapRenderer.fixedToTiles(x + FixedPoint.toFixed(width) - 1);
+		if (dy > 0) {
+			int lastRow = TileMapRenderer.fixedToTiles(bottom + dy - 1);
+			for (int row = TileMapRenderer.fixedToTiles(bottom - 1) + 1; row <= lastRow; row++) {
+				if (findSolidTile(map, fromColumn, toColumn, row, row)) {
+					return hitFixed(false);
+				}
+			}
+		} else if (dy < 0) {
+			int lastRow = TileMapRenderer.fixedToTiles(y + dy);
+			for (int row = TileMapRenderer.fixedToTiles(y) - 1; row >= lastRow; row--) {
+				if (findSolidTile(map, fromColumn, toColumn, row, row)) {
+					return hitFixed(false);
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the solid tile hit by the last sweep.
+	 */
+	public Point getTile() {
+		return tile;
+	}
+
+	/**
+	 * Gets when the last sweep hit a solid tile, from 0 (before moving) to 1
+	 * (after the whole motion). Only set by sweep(), not by the fixed-point
+	 * sweeps.
+	 */
+	public float getTime() {
+		return time;
+	}
+
+	/**
+	 * Checks if the last sweep hit a solid tile with the left or right side
+	 * of the box, rather than the top or bottom.
+	 */
+	public boolean isHorizontal() {
+		return horizontal;
+	}
+
+	/**
+	 * Gets when the leading edge of a box moving by d pixels crosses into the
+	 * specified cell. Returns infinity if it never does.
+	 */
+	private static float getCrossingTime(float position, int size, float d, int cell, int tileSize) {
+		if (d > 0) {
+			return (cell * tileSize - (position + size)) / d;
+		} else if (d < 0) {
+			return ((cell + 1) * tileSize - position) / d;
+		}
+		return Float.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Keeps the side a fixed-point sweep hit the tile with.
+	 */
+	private boolean hitFixed(boolean horizontal) {
+		this.horizontal = horizontal;
+		return true;
+	}
+
+	/**
+	 * Looks for a solid tile in a range of cells.
+	 */
+	private boolean findSolidTile(TileMap map, int fromX, int toX, int fromY, int toY) {
+		for (int x = fromX; x <= toX; x++) {
+			for (int y = fromY; y <= toY; y++) {
+				if (isSolid(map, x, y)) {
+					tile.setLocation(x, y);
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean isSolid(TileMap map, int x, int y) {
+		return x < 0 || x >= map.getWidth() || map.getTile(x, y) != null;
+	}
+
+	private static int floor(float f) {
+		return (int) Math.floor(f);
+	}
+
+	private static int ceil(float f) {
+		return (int) Math.ceil(f);
+	}
+
+}
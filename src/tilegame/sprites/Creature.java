@@ -45,9 +45,11 @@ public abstract class Creature extends Sprite {
 		// use reflection to create the correct subclass
 		Constructor<Creature> constructor = (Constructor<Creature>) (getClass().getConstructors()[0]);
 		try {
-			return constructor.newInstance(new Object[] { 
+			Creature creature = constructor.newInstance(new Object[] { 
 					left.clone(), right.clone(), deadLeft.clone(), deadRight.clone() 
 				});
+			creature.copyHitbox(this);
+			return creature;
 		} catch (Exception ex) {
 			// should never happen
 			ex.printStackTrace();
@@ -1,6 +1,7 @@
 package tilegame.sprites;
 
 import graphics.Animation;
+import graphics.FixedPoint;
 
 /**
  * The Player.
@@ -35,6 +36,14 @@ public class Player extends Creature {
 		super.setY(y);
 	}
 
+	public void setFixedY(int y) {
+		// check if falling
+		if (FixedPoint.round(y) > FixedPoint.round(getFixedY())) {
+			onGround = false;
+		}
+		super.setFixedY(y);
+	}
+
 	@Override
 	public void wakeUp() {
 		// do nothing
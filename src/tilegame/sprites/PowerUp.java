@@ -7,20 +7,68 @@ import graphics.Sprite;
 
 /**
  * A PowerUp class is a Sprite that the player can pick up.
+ * <p>
+ * PowerUps can share one animation clock: the clones of a PowerUp with a
+ * shared clock all show the same Animation, which the game advances once per
+ * update, instead of each clone advancing its own copy. Animating any number
+ * of such PowerUps then costs the same as animating one.
  */
 public class PowerUp extends Sprite {
 
+	private boolean sharedClock;
+
 	private PowerUp(Animation anim) {
 		super(anim);
 	}
 
+	/**
+	 * Checks if the clones of this PowerUp share its Animation.
+	 */
+	public boolean hasSharedClock() {
+		return sharedClock;
+	}
+
+	/**
+	 * Sets whether the clones of this PowerUp share its Animation. With a
+	 * shared clock, update() only moves the PowerUp, and the Animation must
+	 * be updated once per update by the game.
+	 */
+	public void setSharedClock(boolean sharedClock) {
+		this.sharedClock = sharedClock;
+	}
+
+	/**
+	 * Gets the Animation of this PowerUp, which is shared by its clones if it
+	 * has a shared clock.
+	 */
+	public Animation getAnimation() {
+		return anim;
+	}
+
+	/**
+	 * Updates this PowerUp's position, and its Animation unless the Animation
+	 * is shared.
+	 */
+	@Override
+	public void update(long elapsedTime) {
+		if (sharedClock) {
+			updatePosition(elapsedTime);
+		} else {
+			super.update(elapsedTime);
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public PowerUp clone() {
 		// use reflection to create the correct subclass
 		Constructor<PowerUp> constructor = (Constructor<PowerUp>) (getClass().getConstructors()[0]);
 		try {
-			return constructor.newInstance(new Object[] { (Animation) anim.clone() });
+			Animation animation = sharedClock ? anim : anim.clone();
+			PowerUp powerUp = constructor.newInstance(new Object[] { animation });
+			powerUp.sharedClock = sharedClock;
+			powerUp.copyHitbox(this);
+			return powerUp;
 		} catch (Exception ex) {
 			// should never happen
 			ex.printStackTrace();